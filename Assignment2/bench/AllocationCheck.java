@@ -0,0 +1,123 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that World.update allocates nothing once it is warmed up, on every shipped level,
+ * with and without a LaneStore. The player walks left and right along the bottom row.
+ * It is checked again while sprites are spawned and despawned through the command queue in every tick,
+ * under every broad phase. Posting a command creates it on the posting thread, so only the ticks are measured,
+ * and the cycled sprites have no timed events, registering events creates them.
+ * Exits with status 1 when a tick allocated, so it can run in a build.
+ * Run it from the Assignment2 directory so the assets can be found.
+ */
+public class AllocationCheck {
+	private static final String[] SHIPPED_LEVELS = {"assets/levels/0.lvl", "assets/levels/1.lvl"};
+	// long enough for the JIT to see rare paths, such as events due at the same time,
+	// the first run of such a path may recompile a method and that allocates
+	private static final int WARMUP_TICKS = 60000;
+	private static final int MEASURED_TICKS = 10000;
+	private static final int STEP_TICKS = 50;
+	private static final long SEED = 20003;
+	// about how many sprites of the level go in and out of the world
+	private static final int CYCLED_SPRITES = 12;
+	
+	private static final com.sun.management.ThreadMXBean THREADS = 
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	
+	/** Start-up method. Runs the check and prints the bytes allocated by every level.
+	 * @param args Command-line arguments (ignored).
+	 */
+	public static void main(String[] args) {
+		AssetCache.setHeadless(true);
+		boolean passed = true;
+		for (boolean lanes : new boolean[] {false, true}) {
+			WorldConfig config = new WorldConfig();
+			config.setUseLaneStore(lanes);
+			for (String levelPath : SHIPPED_LEVELS) {
+				passed &= check(levelPath + (lanes ? " (lanes)" : ""), new World(SEED, new LevelFiles(levelPath), config));
+			}
+		}
+		for (BroadPhase broadPhase : BroadPhase.values()) {
+			for (boolean lanes : new boolean[] {false, true}) {
+				WorldConfig config = new WorldConfig();
+				config.setBroadPhase(broadPhase);
+				config.setUseLaneStore(lanes);
+				for (String levelPath : SHIPPED_LEVELS) {
+					passed &= checkCommands(levelPath + " " + broadPhase + (lanes ? " (lanes)" : ""), 
+							new World(SEED, new LevelFiles(levelPath), config));
+				}
+			}
+		}
+		System.out.println(passed ? "PASSED" : "FAILED");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+	
+	private static boolean check(String name, World world) {
+		KeyMaskInput input = new KeyMaskInput();
+		run(world, input, 0, WARMUP_TICKS);
+		
+		long id = Thread.currentThread().getId();
+		long before = THREADS.getThreadAllocatedBytes(id);
+		run(world, input, WARMUP_TICKS, MEASURED_TICKS);
+		long bytes = THREADS.getThreadAllocatedBytes(id) - before;
+		
+		boolean passed = bytes == 0 && world.getOutcome() == Outcome.RUNNING;
+		System.out.printf("%-30s %d ticks, %d bytes allocated, %s%n", name, MEASURED_TICKS, bytes, world.getOutcome());
+		return passed;
+	}
+	
+	private static void run(World world, KeyMaskInput input, int firstTick, int ticks) {
+		for (int tick = firstTick; tick < firstTick + ticks; tick++) {
+			// one step every STEP_TICKS ticks, two steps left and then two steps right
+			int step = tick / STEP_TICKS;
+			boolean moves = tick % STEP_TICKS == 0;
+			input.setMask(!moves ? 0 : step % 4 < 2 ? KeyMaskInput.LEFT : KeyMaskInput.RIGHT);
+			world.update(input, App.TICK_MILLIS);
+		}
+	}
+	
+	private static boolean checkCommands(String name, World world) {
+		KeyMaskInput input = new KeyMaskInput();
+		// the first tile, vehicles and logs of the level spread over the list, and a new bus
+		ArrayList<Sprite> cycled = new ArrayList<>();
+		List<Sprite> sprites = world.getSprites();
+		for (int i = 0; i < sprites.size(); i += sprites.size() / CYCLED_SPRITES) {
+			Sprite sprite = sprites.get(i);
+			if (sprite instanceof Tile || sprite instanceof Vehicle || sprite instanceof Log) {
+				cycled.add(sprite);
+			}
+		}
+		cycled.add(new Bus(100, 432, true));
+		world.getProfiler().setTrackAllocations(true);
+		
+		churn(world, input, cycled, 0, WARMUP_TICKS);
+		long bytes = churn(world, input, cycled, WARMUP_TICKS, MEASURED_TICKS);
+		
+		boolean passed = bytes == 0 && world.getOutcome() == Outcome.RUNNING;
+		System.out.printf("%-45s %d ticks, %d sprites cycled, %d bytes allocated, %s%n", name, MEASURED_TICKS, 
+				cycled.size(), bytes, world.getOutcome());
+		return passed;
+	}
+	
+	// one cycled sprite goes in or out of the world every tick, returns the bytes allocated by the ticks
+	private static long churn(World world, KeyMaskInput input, ArrayList<Sprite> cycled, int firstTick, int ticks) {
+		long bytes = 0;
+		for (int tick = firstTick; tick < firstTick + ticks; tick++) {
+			Sprite sprite = cycled.get(tick % cycled.size());
+			if (sprite.getIndex() < 0) {
+				world.spawn(sprite);
+			} else {
+				world.despawn(sprite);
+			}
+			int step = tick / STEP_TICKS;
+			boolean moves = tick % STEP_TICKS == 0;
+			input.setMask(!moves ? 0 : step % 4 < 2 ? KeyMaskInput.LEFT : KeyMaskInput.RIGHT);
+			world.update(input, App.TICK_MILLIS);
+			bytes += world.getProfiler().getAllocatedBytes();
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,202 @@
+import java.util.ArrayList;
+
+import utilities.BoundingBox;
+
+/**
+ * Checks that every broad phase gives the same collisions as testing every pair, in the same order.
+ * A scripted player crosses the road and the water of every shipped level, waiting for gaps between
+ * vehicles and for logs and turtles to ride, and fills holes. A new game is started whenever one ends.
+ * The ordered onCollision calls are recorded under brute force, the uniform grid with the batched
+ * queries of the player and sweep and prune, with and without a LaneStore. Every broad phase must
+ * also find the sprites of a pair whose bounds exactly touch after rounding.
+ * Exits with status 1 when a broad phase differs, so it can run in a build.
+ * Run it from the Assignment2 directory so the assets can be found.
+ */
+public class CollisionCheck {
+	private static final String[] SHIPPED_LEVELS = {"assets/levels/0.lvl", "assets/levels/1.lvl"};
+	private static final long[] SEEDS = {20003, 1, 42};
+	private static final int TICKS = 15000;
+	private static final int STEP_TICKS = 5;
+	private static final BroadPhase[] CHECKED = {BroadPhase.GRID, BroadPhase.SWEEP_AND_PRUNE};
+	// how far ahead the player looks for vehicles, before moving to a row and while staying in it
+	private static final int MOVE_LOOKAHEAD_MILLIS = 500;
+	private static final int STAY_LOOKAHEAD_MILLIS = 250;
+	// room kept between the player and vehicles, and the part of a log the player must land on
+	private static final float VEHICLE_MARGIN = 30;
+	private static final float RIDE_MARGIN = 16;
+	private static final float HOLE_MARGIN = 12;
+	// the row of the sprites whose bounds touch
+	private static final float TOUCHING_Y = 240;
+	
+	// games played and holes filled by the last run
+	private static int games;
+	private static int holes;
+	
+	/** Start-up method. Runs the check and prints the number of collisions of every run.
+	 * @param args Command-line arguments (ignored).
+	 */
+	public static void main(String[] args) {
+		AssetCache.setHeadless(true);
+		boolean passed = true;
+		for (boolean lanes : new boolean[] {false, true}) {
+			for (String levelPath : SHIPPED_LEVELS) {
+				for (long seed : SEEDS) {
+					String name = levelPath + " seed " + seed + (lanes ? " (lanes)" : "");
+					ArrayList<Long> expected = run(BroadPhase.BRUTE_FORCE, lanes, levelPath, seed);
+					System.out.printf("%-40s %d games, %d holes filled%n", name, games, holes);
+					for (BroadPhase broadPhase : CHECKED) {
+						boolean same = run(broadPhase, lanes, levelPath, seed).equals(expected);
+						System.out.printf("%-40s %-16s %7d collisions, %s%n", name, broadPhase, expected.size(), 
+								same ? "same" : "DIFFERENT");
+						passed &= same;
+					}
+				}
+			}
+		}
+		passed &= checkTouching();
+		System.out.println(passed ? "PASSED" : "FAILED");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+	
+	// the ordered collisions of a run, as the tick and the indices of both sprites
+	private static ArrayList<Long> run(BroadPhase broadPhase, boolean lanes, String levelPath, long seed) {
+		WorldConfig config = new WorldConfig();
+		config.setBroadPhase(broadPhase);
+		config.setUseLaneStore(lanes);
+		ArrayList<Long> collisions = new ArrayList<>();
+		int[] tick = new int[1];
+		CollisionListener listener = (sprite, other) -> 
+				collisions.add((long)tick[0] << 32 | sprite.getIndex() << 16 | other.getIndex());
+		
+		KeyMaskInput input = new KeyMaskInput();
+		World world = null;
+		Player player = null;
+		games = 0;
+		holes = 0;
+		for (tick[0] = 0; tick[0] < TICKS; tick[0]++) {
+			if (world == null || world.getOutcome() != Outcome.RUNNING) {
+				holes += world == null ? 0 : world.getScore();
+				world = new World(seed + games++, new LevelFiles(levelPath), config);
+				world.setCollisionListener(listener);
+				player = findPlayer(world);
+			}
+			input.setMask(tick[0] % STEP_TICKS == 0 ? nextMove(world, player) : 0);
+			world.update(input, App.TICK_MILLIS);
+		}
+		holes += world.getScore();
+		return collisions;
+	}
+	
+	/* a log and a long log side by side in a row, sprites are placed at whole pixels and only the widths
+	   of these two add up to a whole number of pixels, so their bounds touch exactly at many positions
+	   after rounding, and every broad phase must find both sprites of a touching pair */
+	private static boolean checkTouching() {
+		int touching = 0;
+		int missed = 0;
+		for (int x = 0; x <= App.SCREEN_WIDTH; x++) {
+			for (boolean logFirst : new boolean[] {false, true}) {
+				Log longLog = Log.createLongLog(x, TOUCHING_Y, false);
+				Log log = Log.createLog(0, TOUCHING_Y, false);
+				int distance = Math.round((longLog.getBounds().getWidth() + log.getBounds().getWidth()) / 2);
+				log.setX(logFirst ? x - distance : x + distance);
+				Sprite left = logFirst ? log : longLog;
+				Sprite right = logFirst ? longLog : log;
+				if (left.getBounds().getRight() != right.getBounds().getLeft()) {
+					continue;
+				}
+				touching++;
+				ArrayList<Sprite> sprites = new ArrayList<>();
+				sprites.add(left);
+				sprites.add(right);
+				// built as at the start of a tick
+				SpatialGrid grid = new SpatialGrid(sprites);
+				grid.rebin();
+				RowIndex rowIndex = new RowIndex(sprites);
+				rowIndex.refresh();
+				SweepAndPrune sweepAndPrune = new SweepAndPrune(sprites);
+				int[] out = new int[sprites.size()];
+				for (int i = 0; i < sprites.size(); i++) {
+					BoundingBox box = sprites.get(i).getBroadBounds();
+					int other = 1 - i;
+					boolean found = contains(out, grid.query(box, -1, out), other)
+							&& contains(out, rowIndex.query(box, -1, out), other)
+							&& contains(out, sweepAndPrune.query(box, -1, out), other);
+					missed += found ? 0 : 1;
+				}
+			}
+		}
+		System.out.printf("%-40s %d touching pairs, %d missed%n", "edges touching", touching, missed);
+		return touching > 0 && missed == 0;
+	}
+	
+	private static boolean contains(int[] candidates, int count, int index) {
+		for (int k = 0; k < count; k++) {
+			if (candidates[k] == index) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static Player findPlayer(World world) {
+		for (Sprite sprite : world.getSprites()) {
+			if (sprite instanceof Player) {
+				return (Player)sprite;
+			}
+		}
+		return null;
+	}
+	
+	// moves up when the row above is safe, and back down when the current row is not
+	private static int nextMove(World world, Player player) {
+		float x = player.getX();
+		float y = player.getY();
+		if (y - World.TILE_SIZE == World.HOLE_Y) {
+			for (int i = 0; i < World.HOLE_X_RANGE.length; i++) {
+				if (!world.getHoleStatus(i) && x > World.HOLE_X_RANGE[i][0] + HOLE_MARGIN
+						&& x < World.HOLE_X_RANGE[i][1] - HOLE_MARGIN) {
+					return KeyMaskInput.UP;
+				}
+			}
+			return 0;
+		}
+		if (isSafe(world, x, y - World.TILE_SIZE, MOVE_LOOKAHEAD_MILLIS)) {
+			return KeyMaskInput.UP;
+		}
+		if (!isSafe(world, x, y, STAY_LOOKAHEAD_MILLIS) && y + World.TILE_SIZE < App.SCREEN_HEIGHT
+				&& isSafe(world, x, y + World.TILE_SIZE, MOVE_LOOKAHEAD_MILLIS)) {
+			return KeyMaskInput.DOWN;
+		}
+		return 0;
+	}
+	
+	private static boolean isSafe(World world, float x, float y, int millis) {
+		boolean water = false;
+		boolean ride = false;
+		for (Sprite sprite : world.getSprites()) {
+			if (sprite.getY() != y || sprite instanceof Player) {
+				continue;
+			}
+			float halfWidth = sprite.getImageWidth() / 2f;
+			float distance = Math.abs(sprite.getX() - x);
+			if (sprite instanceof Tile) {
+				if (sprite.hasTag(Sprite.SOLID) && distance < World.TILE_SIZE) {
+					return false;
+				}
+				water |= sprite.hasTag(Sprite.HAZARD) && distance < World.TILE_SIZE;
+			} else if (sprite.hasTag(Sprite.RIDE)) {
+				ride |= distance < halfWidth - RIDE_MARGIN;
+			} else if (sprite instanceof MovingObject) {
+				// how far the object still has to travel to reach the player
+				MovingObject object = (MovingObject)sprite;
+				float ahead = object.getMoveRight() ? x - object.getX() : object.getX() - x;
+				if (ahead > -(halfWidth + VEHICLE_MARGIN) && ahead < halfWidth + VEHICLE_MARGIN + object.getSpeed() * millis) {
+					return false;
+				}
+			}
+		}
+		return !water || ride;
+	}
+}
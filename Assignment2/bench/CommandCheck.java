@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks that spawn, despawn and tag commands posted for the same tick are all applied,
+ * in the order they were posted, under every broad phase, with and without a LaneStore.
+ * Several sprites are spawned and despawned in one tick, including neighbours in the sprite list,
+ * a sprite spawned and despawned in the same tick, and a sprite despawned twice.
+ * Then sprites are spawned and despawned in every tick, including a tile, and every broad phase must give
+ * the same collisions as testing every pair, in the same order.
+ * Exits with status 1 when a command was lost, so it can run in a build.
+ * Run it from the Assignment2 directory so the assets can be found.
+ */
+public class CommandCheck {
+	private static final String[] SHIPPED_LEVELS = {"assets/levels/0.lvl", "assets/levels/1.lvl"};
+	private static final long SEED = 20003;
+	private static final int TICKS = 100;
+	private static final int CHURN_TICKS = 3000;
+	private static final BroadPhase[] CHECKED = {BroadPhase.GRID, BroadPhase.SWEEP_AND_PRUNE};
+	// lives enough for the player to stand still for the whole run
+	private static final int CHURN_LIVES = 1000;
+	
+	/** Start-up method. Runs the check and prints the result of every configuration.
+	 * @param args Command-line arguments (ignored).
+	 */
+	public static void main(String[] args) {
+		AssetCache.setHeadless(true);
+		boolean passed = true;
+		for (BroadPhase broadPhase : BroadPhase.values()) {
+			for (boolean lanes : new boolean[] {false, true}) {
+				WorldConfig config = new WorldConfig();
+				config.setBroadPhase(broadPhase);
+				config.setUseLaneStore(lanes);
+				for (String levelPath : SHIPPED_LEVELS) {
+					passed &= check(levelPath + " " + broadPhase + (lanes ? " (lanes)" : ""), 
+							new World(SEED, new LevelFiles(levelPath), config));
+				}
+			}
+		}
+		for (boolean lanes : new boolean[] {false, true}) {
+			for (String levelPath : SHIPPED_LEVELS) {
+				String name = levelPath + " churn" + (lanes ? " (lanes)" : "");
+				ArrayList<Long> expected = churn(BroadPhase.BRUTE_FORCE, lanes, levelPath);
+				for (BroadPhase broadPhase : CHECKED) {
+					boolean same = churn(broadPhase, lanes, levelPath).equals(expected);
+					System.out.printf("%-45s %-16s %6d collisions, %s%n", name, broadPhase, expected.size(), 
+							same ? "same" : "DIFFERENT");
+					passed &= same;
+				}
+			}
+		}
+		System.out.println(passed ? "PASSED" : "FAILED");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+	
+	private static boolean check(String name, World world) {
+		KeyMaskInput input = new KeyMaskInput();
+		world.update(input, App.TICK_MILLIS);
+		
+		// the expected sprite list, changed the same way as the commands change the world
+		List<Sprite> expected = new ArrayList<>(world.getSprites());
+		int n = expected.size();
+		// neighbours, the later one moves down when the first is removed
+		Sprite first = expected.get(n - 5);
+		Sprite second = expected.get(n - 4);
+		Sprite far = expected.get(n / 2);
+		Sprite bus = new Bus(100, 432, true);
+		Sprite racecar = new Racecar(300, 576, false);
+		Sprite bike = new Bike(500, 624, true);
+		
+		world.despawn(first);
+		world.despawn(second);
+		world.spawn(bus);
+		world.spawn(racecar);
+		world.despawn(far);
+		world.despawn(far);
+		world.spawn(bike);
+		world.despawn(racecar);
+		world.addTag(bus, Sprite.RIDE);
+		world.deleteTag(bike, Sprite.HAZARD);
+		expected.remove(first);
+		expected.remove(second);
+		expected.add(bus);
+		expected.remove(far);
+		expected.add(bike);
+		
+		world.update(input, App.TICK_MILLIS);
+		boolean passed = world.getSprites().equals(expected) && world.getSpriteView().equals(expected)
+				&& bus.hasTag(Sprite.RIDE) && !bike.hasTag(Sprite.HAZARD);
+		for (int i = 0; i < world.getSprites().size(); i++) {
+			passed &= world.getSprites().get(i).getIndex() == i;
+		}
+		for (Sprite removed : new Sprite[] {first, second, far, racecar}) {
+			passed &= removed.getIndex() == -1;
+		}
+		
+		// the world keeps running with the new sprite list
+		for (int tick = 0; tick < TICKS; tick++) {
+			world.update(input, App.TICK_MILLIS);
+		}
+		passed &= world.getOutcome() == Outcome.RUNNING;
+		System.out.printf("%-45s %d -> %d sprites, %s%n", name, n, world.getSprites().size(), passed ? "ok" : "lost commands");
+		return passed;
+	}
+	
+	// the ordered collisions while sprites go in and out of the world, as the tick and the indices of both sprites
+	private static ArrayList<Long> churn(BroadPhase broadPhase, boolean lanes, String levelPath) {
+		WorldConfig config = new WorldConfig();
+		config.setBroadPhase(broadPhase);
+		config.setUseLaneStore(lanes);
+		World world = new World(SEED, new LevelFiles(levelPath), config);
+		world.setNumLives(CHURN_LIVES);
+		ArrayList<Long> collisions = new ArrayList<>();
+		int[] tick = new int[1];
+		world.setCollisionListener((sprite, other) -> 
+				collisions.add((long)tick[0] << 32 | sprite.getIndex() << 16 | other.getIndex()));
+		
+		// the first tile, sprites of the level spread over the list and new sprites
+		List<Sprite> sprites = world.getSprites();
+		int n = sprites.size();
+		Sprite[] cycled = {sprites.get(0), sprites.get(n / 3), sprites.get(n / 2), sprites.get(n - 5), 
+				sprites.get(n - 4), new Bus(100, 432, true), Log.createLog(200, 240, false)};
+		KeyMaskInput input = new KeyMaskInput();
+		for (tick[0] = 0; tick[0] < CHURN_TICKS; tick[0]++) {
+			toggle(world, cycled[tick[0] % cycled.length]);
+			if (tick[0] % 3 == 0) {
+				toggle(world, cycled[tick[0] / 3 % cycled.length]);
+			}
+			world.update(input, App.TICK_MILLIS);
+		}
+		return collisions;
+	}
+	
+	private static void toggle(World world, Sprite sprite) {
+		if (sprite.getIndex() < 0) {
+			world.spawn(sprite);
+		} else {
+			world.despawn(sprite);
+		}
+	}
+}
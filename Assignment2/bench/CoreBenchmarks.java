@@ -0,0 +1,262 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import utilities.BoundingBox;
+
+/**
+ * Benchmarks of the simulation core, run without a display.
+ * Run it from the Assignment2 directory so the assets can be found.
+ * An optional argument selects the benchmarks whose name contains it.
+ */
+public class CoreBenchmarks {
+	private static final String[] SHIPPED_LEVELS = {"assets/levels/0.lvl", "assets/levels/1.lvl"};
+	private static final int[] SYNTHETIC_SIZES = {10000, 100000};
+	private static final int LARGE_LEVEL_SIZE = 1000000;
+	private static final int DELTA = 16;
+	private static final int NUM_BOXES = 1024;
+	
+	private static String filter;
+	
+	/** Start-up method. Runs the selected benchmarks.
+	 * @param args Command-line arguments, optionally a filter of benchmark names.
+	 * @throws IOException if a synthetic level cannot be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		filter = args.length > 0 ? args[0] : "";
+		AssetCache.setHeadless(true);
+		MicroBenchmark.printHeader();
+		
+		benchmarkIntersects();
+		benchmarkHasTag();
+		for (int i = 0; i < SHIPPED_LEVELS.length; i++) {
+			benchmarkReadLevelFile(i + ".lvl", SHIPPED_LEVELS[i]);
+		}
+		benchmarkReadLevelFile("synthetic-" + SYNTHETIC_SIZES[0], SyntheticLevel.write(SYNTHETIC_SIZES[0]));
+		benchmarkCompiledLevel(LARGE_LEVEL_SIZE);
+		
+		WorldConfig config = new WorldConfig();
+		for (int i = 0; i < SHIPPED_LEVELS.length; i++) {
+			benchmarkUpdate(i + ".lvl", SHIPPED_LEVELS[i], config);
+		}
+		for (int size : SYNTHETIC_SIZES) {
+			benchmarkUpdate("synthetic-" + size, SyntheticLevel.write(size), config);
+		}
+		
+		WorldConfig lanes = new WorldConfig();
+		lanes.setUseLaneStore(true);
+		for (int i = 0; i < SHIPPED_LEVELS.length; i++) {
+			benchmarkUpdate(i + ".lvl (lanes)", SHIPPED_LEVELS[i], lanes);
+		}
+		
+		// the other broad phases, brute force tests every pair so it only runs the shipped levels
+		WorldConfig sweepAndPrune = new WorldConfig();
+		sweepAndPrune.setBroadPhase(BroadPhase.SWEEP_AND_PRUNE);
+		for (int i = 0; i < SHIPPED_LEVELS.length; i++) {
+			benchmarkUpdate(i + ".lvl (sweep and prune)", SHIPPED_LEVELS[i], sweepAndPrune);
+		}
+		benchmarkUpdate("synthetic-" + SYNTHETIC_SIZES[0] + " (sweep and prune)", SyntheticLevel.write(SYNTHETIC_SIZES[0]), 
+				sweepAndPrune);
+		WorldConfig bruteForce = new WorldConfig();
+		bruteForce.setBroadPhase(BroadPhase.BRUTE_FORCE);
+		for (int i = 0; i < SHIPPED_LEVELS.length; i++) {
+			benchmarkUpdate(i + ".lvl (brute force)", SHIPPED_LEVELS[i], bruteForce);
+		}
+		benchmarkMovement(SYNTHETIC_SIZES[SYNTHETIC_SIZES.length - 1]);
+		benchmarkSnapshot("0.lvl", SHIPPED_LEVELS[0]);
+		benchmarkSnapshot("synthetic-" + SYNTHETIC_SIZES[0], SyntheticLevel.write(SYNTHETIC_SIZES[0]));
+	}
+	
+	private static boolean selected(String name) {
+		return name.contains(filter);
+	}
+	
+	private static void benchmarkIntersects() {
+		if (!selected("BoundingBox.intersects")) {
+			return;
+		}
+		BoundingBox[] boxes = new BoundingBox[NUM_BOXES];
+		for (int i = 0; i < boxes.length; i++) {
+			boxes[i] = new BoundingBox(i * 7 % App.SCREEN_WIDTH, i * 13 % App.SCREEN_HEIGHT, 
+					World.TILE_SIZE, World.TILE_SIZE);
+		}
+		BoundingBox query = new BoundingBox(App.SCREEN_WIDTH / 2, App.SCREEN_HEIGHT / 2, 
+				World.TILE_SIZE, World.TILE_SIZE);
+		MicroBenchmark.run("BoundingBox.intersects", operations -> {
+			long hits = 0;
+			for (long i = 0; i < operations; i++) {
+				if (query.intersects(boxes[(int)(i & (NUM_BOXES - 1))])) {
+					hits++;
+				}
+			}
+			return hits;
+		});
+		
+		// the same boxes packed in arrays, tested a whole array at a time
+		float[] lefts = new float[NUM_BOXES];
+		float[] tops = new float[NUM_BOXES];
+		float[] rights = new float[NUM_BOXES];
+		float[] bottoms = new float[NUM_BOXES];
+		for (int i = 0; i < boxes.length; i++) {
+			lefts[i] = boxes[i].getLeft();
+			tops[i] = boxes[i].getTop();
+			rights[i] = boxes[i].getRight();
+			bottoms[i] = boxes[i].getBottom();
+		}
+		float[] apart = new float[NUM_BOXES];
+		long[] bitmap = new long[NUM_BOXES / 64];
+		MicroBenchmark.run("BoundingBox.intersects (batch)", operations -> {
+			long hits = 0;
+			for (long i = 0; i < operations; i += NUM_BOXES) {
+				hits += query.intersects(lefts, tops, rights, bottoms, 0, NUM_BOXES, apart, bitmap);
+			}
+			return hits;
+		});
+	}
+	
+	private static void benchmarkHasTag() {
+		if (!selected("Sprite.hasTag")) {
+			return;
+		}
+		// the sprites of a shipped level, so tags and the sprite vary between calls
+		ArrayList<Sprite> level = World.readLevelFile(SHIPPED_LEVELS[0]);
+		Sprite[] sprites = new Sprite[NUM_BOXES];
+		for (int i = 0; i < sprites.length; i++) {
+			sprites[i] = level.get(i % level.size());
+		}
+		Tag[] tags = {Sprite.HAZARD, Sprite.RIDE, Sprite.SOLID, Sprite.EXTRA_LIFE};
+		MicroBenchmark.run("Sprite.hasTag", operations -> {
+			long hits = 0;
+			for (long i = 0; i < operations; i++) {
+				if (sprites[(int)(i & (NUM_BOXES - 1))].hasTag(tags[(int)(i & (tags.length - 1))])) {
+					hits++;
+				}
+			}
+			return hits;
+		});
+	}
+	
+	private static void benchmarkReadLevelFile(String levelName, String levelPath) {
+		String name = "World.readLevelFile " + levelName;
+		if (!selected(name)) {
+			return;
+		}
+		MicroBenchmark.run(name, operations -> {
+			long size = 0;
+			for (long i = 0; i < operations; i++) {
+				ArrayList<Sprite> sprites = World.readLevelFile(levelPath);
+				size += sprites.size();
+			}
+			return size;
+		});
+	}
+	
+	private static void benchmarkCompiledLevel(int size) throws IOException {
+		String name = "World.readLevelFile synthetic-" + size;
+		if (!selected(name)) {
+			return;
+		}
+		String levelPath = SyntheticLevel.write(size);
+		benchmarkReadLevelFile("synthetic-" + size + " (csv)", levelPath);
+		String compiledPath = CompiledLevel.getCompiledPath(levelPath);
+		CompiledLevel.compile(levelPath, compiledPath);
+		new File(compiledPath).deleteOnExit();
+		benchmarkReadLevelFile("synthetic-" + size + " (compiled)", levelPath);
+	}
+	
+	private static void benchmarkMovement(int size) throws IOException {
+		if (!selected("MovingObject.update") && !selected("LaneStore.advance")) {
+			return;
+		}
+		String levelPath = SyntheticLevel.write(size);
+		ArrayList<Sprite> objects = new ArrayList<>();
+		for (Sprite sprite : World.readLevelFile(levelPath)) {
+			if (sprite instanceof MovingObject && ((MovingObject)sprite).movesInLane()) {
+				objects.add(sprite);
+			}
+		}
+		KeyMaskInput input = new KeyMaskInput();
+		MicroBenchmark.run("MovingObject.update x" + objects.size(), operations -> {
+			for (long i = 0; i < operations; i++) {
+				for (Sprite object : objects) {
+					object.update(input, DELTA);
+				}
+			}
+			return objects.size();
+		});
+		
+		LaneStore store = new LaneStore(World.readLevelFile(levelPath));
+		MicroBenchmark.run("LaneStore.advance x" + store.size(), operations -> {
+			for (long i = 0; i < operations; i++) {
+				store.advance(DELTA);
+			}
+			return store.size();
+		});
+		
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		MicroBenchmark.run("LaneStore.advanceParallel x" + store.size() + " on " + pool.getParallelism(), operations -> {
+			for (long i = 0; i < operations; i++) {
+				store.advanceParallel(DELTA, pool);
+			}
+			return store.size();
+		});
+	}
+	
+	private static void benchmarkSnapshot(String levelName, String levelPath) {
+		if (!selected("World.snapshot") && !selected("World.restore")) {
+			return;
+		}
+		World world = new World(levelPath);
+		KeyMaskInput input = new KeyMaskInput();
+		Snapshot baseline = new Snapshot();
+		world.snapshot(baseline);
+		Snapshot snapshot = new Snapshot();
+		MicroBenchmark.run("World.snapshot " + levelName, operations -> {
+			for (long i = 0; i < operations; i++) {
+				world.snapshot(snapshot);
+			}
+			return snapshot.size();
+		});
+		MicroBenchmark.run("World.restore " + levelName, operations -> {
+			for (long i = 0; i < operations; i++) {
+				world.restore(baseline);
+			}
+			return world.getSprites().size();
+		});
+		
+		// a tick later, moving sprites differ from the baseline and tiles do not
+		world.update(input, DELTA);
+		Snapshot delta = new Snapshot();
+		MicroBenchmark.run("World.snapshot " + levelName + " (delta)", operations -> {
+			for (long i = 0; i < operations; i++) {
+				world.snapshot(delta, baseline);
+			}
+			return delta.size();
+		});
+		MicroBenchmark.run("World.restore " + levelName + " (delta)", operations -> {
+			for (long i = 0; i < operations; i++) {
+				world.restore(delta);
+			}
+			return world.getSprites().size();
+		});
+		System.out.println("full snapshot " + baseline.size() + " bytes, delta snapshot " + delta.size() + " bytes, "
+				+ delta.getNumChanged() + " of " + delta.getNumSprites() + " sprites changed");
+	}
+	
+	private static void benchmarkUpdate(String levelName, String levelPath, WorldConfig config) {
+		String name = "World.update " + levelName;
+		if (!selected(name)) {
+			return;
+		}
+		World world = new World(new Random().nextLong(), new LevelFiles(levelPath), config);
+		KeyMaskInput input = new KeyMaskInput();
+		MicroBenchmark.run(name, operations -> {
+			for (long i = 0; i < operations; i++) {
+				world.update(input, DELTA);
+			}
+			return world.getSprites().size();
+		});
+	}
+}
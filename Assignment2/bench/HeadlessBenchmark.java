@@ -0,0 +1,57 @@
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+
+/**
+ * Measures how many ticks per second the world simulates without a display.
+ * Run it from the Assignment2 directory so the assets can be found.
+ */
+public class HeadlessBenchmark {
+	private static final int DELTA = 16;
+	private static final int WARMUP_TICKS = 50000;
+	private static final int MEASURED_TICKS = 500000;
+	private static final int CSV_INTERVAL_TICKS = 10000;
+	
+	/** Start-up method. Runs the benchmark and prints the result.
+	 * @param args Command-line arguments, optionally the number of measured ticks and a CSV file
+	 * receiving the metrics of the profiler, since the warm-up, every CSV_INTERVAL_TICKS ticks.
+	 * @throws FileNotFoundException if the CSV file cannot be written.
+	 */
+	public static void main(String[] args) throws FileNotFoundException {
+		int ticks = args.length > 0 ? Integer.parseInt(args[0]) : MEASURED_TICKS;
+		AssetCache.setHeadless(true);
+		World world = new World();
+		KeyMaskInput input = new KeyMaskInput();
+		Profiler profiler = world.getProfiler();
+		
+		for (int i = 0; i < WARMUP_TICKS; i++) {
+			world.update(input, DELTA);
+		}
+		profiler.reset();
+		
+		PrintWriter csv = null;
+		if (args.length > 1) {
+			csv = new PrintWriter(args[1]);
+			profiler.setTrackAllocations(true);
+			Profiler.writeCsvHeader(csv);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ticks; i++) {
+			world.update(input, DELTA);
+			if (csv != null && (i + 1) % CSV_INTERVAL_TICKS == 0) {
+				profiler.writeCsvRow(csv);
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		if (csv != null) {
+			csv.close();
+		}
+		
+		System.out.printf("%d ticks in %.3f s, %.0f ticks/s%n", ticks, elapsed / 1e9, ticks * 1e9 / elapsed);
+		for (Profiler.Phase phase : Profiler.Phase.values()) {
+			Histogram histogram = profiler.getHistogram(phase);
+			System.out.printf("%-10s %8d samples, mean %8.0f ns, p50 %8d ns, p99 %8d ns, max %10d ns%n", 
+					phase.name().toLowerCase(), histogram.getCount(), histogram.getMean(), 
+					histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99), histogram.getMax());
+		}
+	}
+}
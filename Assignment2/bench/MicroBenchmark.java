@@ -0,0 +1,84 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * A small benchmark harness in the spirit of JMH, without extra libraries.
+ * Every benchmark runs warm-up iterations first, then measured iterations of a fixed
+ * duration, and reports the time per operation and the bytes allocated per operation
+ * by the benchmark thread.
+ */
+public class MicroBenchmark {
+	/**
+	 * Represents the measured code.
+	 */
+	public interface Operation {
+		/**
+		 * Run the measured code a number of times.
+		 * @param operations the number of operations to run.
+		 * @return any value depending on the work, so it cannot be optimised away.
+		 */
+		long run(long operations);
+	}
+	
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int MEASURED_ITERATIONS = 5;
+	private static final long ITERATION_NANOS = 1000000000L;
+	
+	// consumes the results of operations
+	private static volatile long sink;
+	
+	private static final com.sun.management.ThreadMXBean THREADS = 
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	
+	/**
+	 * Print the header of the result table.
+	 */
+	public static void printHeader() {
+		System.out.printf("%-50s %14s %14s %12s %12s%n", "Benchmark", "ns/op", "min ns/op", "B/op", "MB/s alloc");
+	}
+	
+	/**
+	 * Measure an operation and print its result.
+	 * @param name the name of the benchmark.
+	 * @param operation the measured code.
+	 */
+	public static void run(String name, Operation operation) {
+		long batch = 1;
+		// warm up and find a batch size taking a noticeable time
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			long start = System.nanoTime();
+			do {
+				sink += operation.run(batch);
+				if (System.nanoTime() - start < ITERATION_NANOS / 100) {
+					batch *= 2;
+				}
+			} while (System.nanoTime() - start < ITERATION_NANOS);
+		}
+		
+		long totalOperations = 0;
+		long totalNanos = 0;
+		long totalBytes = 0;
+		double minNanosPerOperation = Double.MAX_VALUE;
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			long operations = 0;
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			long elapsed;
+			do {
+				sink += operation.run(batch);
+				operations += batch;
+				elapsed = System.nanoTime() - start;
+			} while (elapsed < ITERATION_NANOS);
+			totalBytes += allocatedBytes() - bytes;
+			totalOperations += operations;
+			totalNanos += elapsed;
+			minNanosPerOperation = Math.min(minNanosPerOperation, (double)elapsed / operations);
+		}
+		
+		System.out.printf("%-50s %14.1f %14.1f %12.1f %12.1f%n", name, (double)totalNanos / totalOperations, 
+				minNanosPerOperation, (double)totalBytes / totalOperations, totalBytes * 1e3 / totalNanos);
+	}
+	
+	private static long allocatedBytes() {
+		return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,90 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Plays generated levels without a display for a long time and reports the tick rate and
+ * the memory used every interval, to show both stay flat however many levels are streamed in.
+ * The player stays on the start row, and every hole is filled every few seconds of game time,
+ * so a new level is generated and the previous one dropped. When the game is lost a new world
+ * with the next seed is started. The sprite pools of the world should stop creating sprites
+ * after the first levels.
+ * Run it from the Assignment2 directory so the assets can be found.
+ */
+public class SoakTest {
+	private static final long DEFAULT_SEED = 20180101L;
+	private static final int DEFAULT_SECONDS = 3600;
+	private static final int DEFAULT_INTERVAL_SECONDS = 60;
+	// game time spent on every level before its holes are filled
+	private static final int TICKS_PER_LEVEL = 2000;
+	// the clock is only read every so many ticks
+	private static final int CLOCK_TICKS = 1000;
+
+	/** Start-up method. Runs the soak test and prints a line every interval.
+	 * @param args Command-line arguments, optionally the duration and the interval in seconds, and the seed.
+	 */
+	public static void main(String[] args) {
+		int seconds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SECONDS;
+		int intervalSeconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_INTERVAL_SECONDS;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+		AssetCache.setHeadless(true);
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		KeyMaskInput input = new KeyMaskInput();
+
+		// the next level is created when it starts, a prefetch would not be ready at this speed
+		WorldConfig config = new WorldConfig();
+		config.setPrefetchLevels(false);
+		World world = new World(seed, new ProceduralLevel(seed), config);
+		long levels = 1;
+		long worlds = 1;
+		long ticks = 0;
+		long intervalTicks = 0;
+		long start = System.nanoTime();
+		long end = start + seconds * 1000000000L;
+		long intervalStart = start;
+		long intervalNanos = intervalSeconds * 1000000000L;
+		System.out.println("seconds    ticks/s  levels  worlds  sprites  created  heap MB  load p99 us");
+		while (true) {
+			world.update(input, App.TICK_MILLIS);
+			ticks++;
+			intervalTicks++;
+			if (world.getOutcome() != Outcome.RUNNING) {
+				seed++;
+				world = new World(seed, new ProceduralLevel(seed), config);
+				worlds++;
+				levels++;
+			} else if (ticks % TICKS_PER_LEVEL == 0) {
+				for (int i = 0; i < World.HOLE_X_RANGE.length; i++) {
+					if (!world.getHoleStatus(i)) {
+						world.arriveHole(i);
+					}
+				}
+				// the next update streams the next level in
+				levels++;
+			}
+
+			if (ticks % CLOCK_TICKS != 0) {
+				continue;
+			}
+			long now = System.nanoTime();
+			if (now - intervalStart >= intervalNanos || now >= end) {
+				// only live objects are counted
+				System.gc();
+				long heap = memory.getHeapMemoryUsage().getUsed();
+				Histogram load = world.getProfiler().getHistogram(Profiler.Phase.LOAD_LEVEL);
+				System.out.printf("%7.0f %10.0f %7d %7d %8d %8d %8.1f %12.0f%n", (now - start) / 1e9,
+						intervalTicks * 1e9 / (now - intervalStart), levels, worlds, world.getSprites().size(),
+						world.getSpritePools().getCreated(), heap / 1e6, load.getValueAtPercentile(99) / 1e3);
+				intervalStart = System.nanoTime();
+				intervalTicks = 0;
+			}
+			if (now >= end) {
+				break;
+			}
+		}
+		System.out.printf("%d ticks in %d s, %d levels generated%n", ticks, seconds, levels);
+		for (SpritePool<?> pool : world.getSpritePools().getPools()) {
+			System.out.printf("%-12s created %4d, in use %4d, free %4d, high water %4d%n", pool.getName(),
+					pool.getCreated(), pool.getInUse(), pool.getFree(), pool.getHighWater());
+		}
+	}
+}
@@ -0,0 +1,66 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+/**
+ * Writes level files of an arbitrary size for benchmarks.
+ * The background is the one of the shipped levels: grass rows, water rows and a tree row
+ * with the holes. The remaining entries are vehicles on the road rows and logs on the water rows.
+ */
+public class SyntheticLevel {
+	private static final int COLUMNS = App.SCREEN_WIDTH / World.TILE_SIZE;
+	private static final int TREE_ROW = 1;
+	private static final int FIRST_WATER_ROW = 2;
+	private static final int LAST_WATER_ROW = 6;
+	private static final int FIRST_ROAD_ROW = 8;
+	private static final int LAST_ROAD_ROW = 13;
+	private static final String[] VEHICLES = {"bus", "racecar", "bike", "bulldozer"};
+	private static final String[] LOGS = {"log", "longLog"};
+	private static final long SEED = 20003;
+	
+	/**
+	 * Write a level file with a number of entries into a temporary file.
+	 * @param numSprites the number of entries in the file.
+	 * @return the path of the written file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static String write(int numSprites) throws IOException {
+		File file = File.createTempFile("synthetic" + numSprites, ".lvl");
+		file.deleteOnExit();
+		Random random = new Random(SEED);
+		try (PrintWriter writer = new PrintWriter(file)) {
+			int written = 0;
+			// background
+			for (int row = TREE_ROW; row <= LAST_ROAD_ROW + 2 && written < numSprites; row++) {
+				for (int col = 0; col < COLUMNS && written < numSprites; col++) {
+					String tile;
+					if (row == TREE_ROW) {
+						if (col % 4 == 1 || col % 4 == 2) {
+							continue;
+						}
+						tile = "tree";
+					} else if (row >= FIRST_WATER_ROW && row <= LAST_WATER_ROW) {
+						tile = "water";
+					} else if (row == LAST_WATER_ROW + 1 || row == LAST_ROAD_ROW + 1) {
+						tile = "grass";
+					} else {
+						continue;
+					}
+					writer.println(tile + "," + col * World.TILE_SIZE + "," + row * World.TILE_SIZE);
+					written++;
+				}
+			}
+			// moving objects spread over the lanes
+			for (; written < numSprites; written++) {
+				boolean onRoad = random.nextBoolean();
+				int row = onRoad ? FIRST_ROAD_ROW + random.nextInt(LAST_ROAD_ROW - FIRST_ROAD_ROW + 1)
+						: FIRST_WATER_ROW + random.nextInt(LAST_WATER_ROW - FIRST_WATER_ROW + 1);
+				String type = onRoad ? VEHICLES[random.nextInt(VEHICLES.length)] : LOGS[random.nextInt(LOGS.length)];
+				writer.println(type + "," + random.nextInt(App.SCREEN_WIDTH) + "," + row * World.TILE_SIZE 
+						+ "," + (row % 2 == 0));
+			}
+		}
+		return file.getPath();
+	}
+}
@@ -3,12 +3,15 @@
  * by Zhu Yuqiang, Student ID: 853912
  */
 
+import java.io.IOException;
+import java.util.Random;
+
 import org.newdawn.slick.AppGameContainer;
 import org.newdawn.slick.BasicGame;
 import org.newdawn.slick.GameContainer;
 import org.newdawn.slick.Graphics;
-import org.newdawn.slick.SlickException;
 import org.newdawn.slick.Input;
+import org.newdawn.slick.SlickException;
 
 /**
  * Main class for the game.
@@ -19,8 +22,30 @@ public class App extends BasicGame {
     public static final int SCREEN_WIDTH = 1024;
     /** screen height, in pixels */
     public static final int SCREEN_HEIGHT = 768;
+    /** length of a simulation tick, in milliseconds */
+    public static final int TICK_MILLIS = 10;
+    /** the most ticks simulated in one frame, the rest of a long frame is dropped */
+    public static final int MAX_TICKS_PER_FRAME = 10;
+    /** the file every session is recorded into, played again by Replay */
+    public static final String REPLAY_PATH = "last-session" + ReplayRecorder.EXTENSION;
+    /** the key showing and hiding the profiler overlay */
+    public static final int PROFILER_KEY = Input.KEY_F3;
+    /** the name of the profiler in JMX */
+    public static final String PROFILER_NAME = "ShadowLeap:type=Profiler";
+    private static final float OVERLAY_X = 10;
+    private static final float OVERLAY_Y = 10;
+    private static final float OVERLAY_LINE_HEIGHT = 18;
 
     private World world;
+    private InputSource input;
+    // the simulation runs in fixed ticks, whatever the frame rate is
+    private FixedStepLoop loop;
+    // keys pressed since the last tick, and the keys given to a tick
+    private int pendingKeys;
+    private KeyMaskInput tickInput;
+    // null when the session cannot be recorded
+    private ReplayRecorder recorder;
+    private boolean showProfiler;
     
     /**
      * Initialize the class
@@ -35,7 +60,19 @@ public class App extends BasicGame {
     @Override
     public void init(GameContainer gc)
             throws SlickException {
-        world = new World();
+        // decode every image once, before the first level is created
+        AssetCache.preload();
+        long seed = new Random().nextLong();
+        world = new World(seed);
+        try {
+            recorder = new ReplayRecorder(REPLAY_PATH, seed, TICK_MILLIS);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        input = new SlickInputSource(gc.getInput());
+        world.getProfiler().register(PROFILER_NAME);
+        loop = new FixedStepLoop(TICK_MILLIS, MAX_TICKS_PER_FRAME);
+        tickInput = new KeyMaskInput();
     }
 
     /** Update the game state for a frame.
@@ -45,9 +82,56 @@ public class App extends BasicGame {
     @Override
     public void update(GameContainer gc, int delta)
             throws SlickException {
-        // Get data about the current input (keyboard state).
-        Input input = gc.getInput();
-        world.update(input, delta);
+        if (gc.getInput().isKeyPressed(PROFILER_KEY)) {
+            showProfiler = !showProfiler;
+            // measuring allocations is only worth its cost while someone looks at them
+            world.getProfiler().setTrackAllocations(showProfiler);
+        }
+        // keep key presses until a tick consumes them, a frame may run no tick at all
+        pendingKeys |= KeyMaskInput.readMask(input);
+        int ticks = loop.advance(delta);
+        for (int i = 0; i < ticks; i++) {
+            tickInput.setMask(pendingKeys);
+            pendingKeys = 0;
+            record(tickInput.getMask());
+            world.update(tickInput, loop.getTickMillis());
+        }
+        // the game is over when all lives are lost or the last level is won
+        if (world.getOutcome() != Outcome.RUNNING) {
+            stopRecording();
+            gc.exit();
+        }
+    }
+    
+    private void record(int mask) {
+        if (recorder != null) {
+            try {
+                recorder.record(mask);
+            } catch (IOException e) {
+                e.printStackTrace();
+                stopRecording();
+            }
+        }
+    }
+    
+    private void stopRecording() {
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            recorder = null;
+        }
+    }
+    
+    /** Write the rest of the recorded session when the window is closed.
+     * @return true, the game can always be closed.
+     */
+    @Override
+    public boolean closeRequested() {
+        stopRecording();
+        return true;
     }
 
     /** Render the entire screen, so it reflects the current game state.
@@ -56,7 +140,36 @@ public class App extends BasicGame {
      */
     public void render(GameContainer gc, Graphics g)
             throws SlickException {
-        world.render(g);
+        // draw sprites between the last two ticks
+        world.render(g, loop.getAlpha());
+        if (showProfiler) {
+            renderProfiler(g, world.getProfiler(), world.getRenderStats());
+        }
+    }
+    
+    private void renderProfiler(Graphics g, Profiler profiler, RenderStats renderStats) {
+        // the overlay formats strings every frame, it is only drawn on request
+        String[] lines = {
+            formatPhase(profiler, Profiler.Phase.UPDATE),
+            formatPhase(profiler, Profiler.Phase.COLLISION),
+            formatPhase(profiler, Profiler.Phase.UPGRADE),
+            formatPhase(profiler, Profiler.Phase.RENDER),
+            formatPhase(profiler, Profiler.Phase.LOAD_LEVEL),
+            String.format("collisions %d tested, %d colliding", profiler.getCollisionTests(), profiler.getCollisionPairs()),
+            String.format("draw calls %d, allocated %d B/tick", renderStats.getDrawCalls(), profiler.getAllocatedBytes()),
+            String.format("sprites %d drawn, %d culled, %d hidden", renderStats.getDrawn(), renderStats.getCulled(), 
+                    renderStats.getHidden()),
+        };
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], OVERLAY_X, OVERLAY_Y + i * OVERLAY_LINE_HEIGHT);
+        }
+    }
+    
+    private static String formatPhase(Profiler profiler, Profiler.Phase phase) {
+        Histogram histogram = profiler.getHistogram(phase);
+        return String.format("%-10s mean %7.1f us  p50 %7.1f us  p99 %7.1f us  max %8.1f us", 
+                phase.name().toLowerCase(), histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0, 
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getMax() / 1000.0);
     }
 
     /** Start-up method. Creates the game and runs it.
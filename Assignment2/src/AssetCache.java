@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lwjgl.opengl.GLContext;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.opengl.Texture;
+
+/**
+ * Process-wide cache of the images in assets, keyed by path.
+ * Sprites with the same image share one Image and one texture, so loading a level decodes
+ * every image at most once. The size of every image is cached as well, and the sizes of the
+ * shipped images are known in advance, so sprites can be created without decoding images
+ * when the game runs headless.
+ */
+public class AssetCache {
+	private static final int BYTES_PER_PIXEL = 4;
+	
+	// {width, height} of every image
+	private static final ConcurrentHashMap<String, int[]> SIZES = new ConcurrentHashMap<>();
+	static {
+		SIZES.put("assets/bike.png", new int[] {48, 48});
+		SIZES.put("assets/bulldozer.png", new int[] {48, 48});
+		SIZES.put("assets/bus.png", new int[] {48, 48});
+		SIZES.put("assets/extralife.png", new int[] {48, 48});
+		SIZES.put("assets/frog.png", new int[] {48, 48});
+		SIZES.put("assets/grass.png", new int[] {48, 48});
+		SIZES.put("assets/lives.png", new int[] {24, 24});
+		SIZES.put("assets/log.png", new int[] {132, 48});
+		SIZES.put("assets/longlog.png", new int[] {228, 48});
+		SIZES.put("assets/racecar.png", new int[] {48, 48});
+		SIZES.put("assets/tree.png", new int[] {48, 48});
+		SIZES.put("assets/turtles.png", new int[] {144, 24});
+		SIZES.put("assets/water.png", new int[] {48, 48});
+	}
+	
+	// a small number for every image, in the order they are first asked for
+	private static final ConcurrentHashMap<String, Integer> TEXTURE_IDS = new ConcurrentHashMap<>();
+	private static final AtomicInteger NEXT_TEXTURE_ID = new AtomicInteger();
+	
+	private static final HashMap<String, Image> IMAGES = new HashMap<>();
+	private static boolean headless = false;
+	private static long hits;
+	private static long misses;
+	private static long bytes;
+	
+	/**
+	 * Sets whether sprites are created without images.
+	 * It must be set before the world is created.
+	 * @param headless true when there is no display.
+	 */
+	public static void setHeadless(boolean headless) {
+		AssetCache.headless = headless;
+	}
+	
+	/**
+	 * detect whether sprites are created without images.
+	 * @return true when there is no display.
+	 */
+	public static boolean isHeadless() {
+		return headless;
+	}
+	
+	/**
+	 * Load every image in assets, so the first level does not wait for decoding.
+	 * Nothing is loaded when the game runs headless.
+	 * @throws SlickException if an image cannot be loaded.
+	 */
+	public static void preload() throws SlickException {
+		if (headless) {
+			return;
+		}
+		// every shipped image has a known size
+		for (String path : new ArrayList<>(SIZES.keySet())) {
+			getImage(path);
+		}
+	}
+	
+	/**
+	 * Accesses the shared image of a path, the image is loaded when it is not cached.
+	 * Only a thread with an OpenGL context, such as the render thread, can load an image;
+	 * other threads, such as the level loader of a world, only get the images loaded by preload.
+	 * @param imageSrc the source path of image.
+	 * @return the shared image.
+	 * @throws SlickException if the image cannot be loaded.
+	 * @throws IllegalStateException if the image is not cached and the thread has no OpenGL context.
+	 */
+	public static synchronized Image getImage(String imageSrc) throws SlickException {
+		Image image = IMAGES.get(imageSrc);
+		if (image != null) {
+			hits++;
+			return image;
+		}
+		if (!hasContext()) {
+			throw new IllegalStateException("Cannot load " + imageSrc + " on thread " + Thread.currentThread().getName()
+					+ " without an OpenGL context, AssetCache.preload must load it on the render thread");
+		}
+		misses++;
+		image = new Image(imageSrc);
+		IMAGES.put(imageSrc, image);
+		SIZES.put(imageSrc, new int[] {image.getWidth(), image.getHeight()});
+		Texture texture = image.getTexture();
+		bytes += (long)texture.getTextureWidth() * texture.getTextureHeight() * BYTES_PER_PIXEL;
+		return image;
+	}
+	
+	/**
+	 * Accesses the number of an image, sprites with the same number are drawn with the same texture.
+	 * It is known without loading the image, so headless worlds have it too.
+	 * @param imageSrc the source path of image.
+	 * @return the number of the image, from 0.
+	 */
+	public static int getTextureId(String imageSrc) {
+		return TEXTURE_IDS.computeIfAbsent(imageSrc, path -> NEXT_TEXTURE_ID.getAndIncrement());
+	}
+	
+	/**
+	 * Accesses the width of an image.
+	 * @param imageSrc the source path of image.
+	 * @return the width of the image, in pixels.
+	 */
+	public static int getWidth(String imageSrc) {
+		return getSize(imageSrc)[0];
+	}
+	
+	/**
+	 * Accesses the height of an image.
+	 * @param imageSrc the source path of image.
+	 * @return the height of the image, in pixels.
+	 */
+	public static int getHeight(String imageSrc) {
+		return getSize(imageSrc)[1];
+	}
+	
+	/**
+	 * Accesses the number of requests served by a cached image.
+	 * @return the number of cache hits.
+	 */
+	public static synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * Accesses the number of requests which loaded an image.
+	 * @return the number of cache misses.
+	 */
+	public static synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * Accesses the texture memory used by cached images.
+	 * @return the size of all textures, in bytes.
+	 */
+	public static synchronized long getBytes() {
+		return bytes;
+	}
+	
+	// whether the current thread can create textures
+	private static boolean hasContext() {
+		try {
+			GLContext.getCapabilities();
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+	
+	private static int[] getSize(String imageSrc) {
+		int[] size = SIZES.get(imageSrc);
+		if (size == null) {
+			throw new IllegalArgumentException("Unknown image size: " + imageSrc);
+		}
+		return size;
+	}
+}
@@ -0,0 +1,214 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many independent games without a display, in parallel on all cores.
+ * Every episode plays its own World with a seed and a scripted input, so an episode
+ * is repeated exactly by running it again with the same seed.
+ * Run it from the Assignment2 directory so the assets can be found.
+ */
+public class BatchRunner {
+	private static final int DEFAULT_EPISODES = 64;
+	private static final int DEFAULT_MAX_TICKS = 60000;
+	private static final long DEFAULT_SEED = 20180101L;
+	// every key combination of the script is held for this many ticks
+	private static final int KEY_HOLD_TICKS = 8;
+	private static final String[] LEVEL_PATHS = {"assets/levels/0.lvl", "assets/levels/1.lvl"};
+
+	/**
+	 * The result of one episode.
+	 */
+	public static class Result {
+		private final long seed;
+		private final Outcome outcome;
+		private final int score;
+		private final int level;
+		private final int ticks;
+
+		private Result(long seed, Outcome outcome, int score, int level, int ticks) {
+			this.seed = seed;
+			this.outcome = outcome;
+			this.score = score;
+			this.level = level;
+			this.ticks = ticks;
+		}
+
+		/**
+		 * Accesses the seed of the episode.
+		 * @return the seed of the world and of the scripted input.
+		 */
+		public long getSeed() {
+			return seed;
+		}
+
+		/**
+		 * Accesses the state of the game when the episode ended.
+		 * @return RUNNING when the episode ran out of ticks.
+		 */
+		public Outcome getOutcome() {
+			return outcome;
+		}
+
+		/**
+		 * Accesses the number of holes reached.
+		 * @return the score.
+		 */
+		public int getScore() {
+			return score;
+		}
+
+		/**
+		 * Accesses the level the episode ended in.
+		 * @return the number of the level, starting from 1.
+		 */
+		public int getLevel() {
+			return level;
+		}
+
+		/**
+		 * Accesses the number of simulated ticks.
+		 * @return the number of ticks.
+		 */
+		public int getTicks() {
+			return ticks;
+		}
+	}
+
+	private final int maxTicks;
+	private final ForkJoinPool pool;
+	// a copy, so changing the configuration of the caller does not change the episodes of a run
+	private final WorldConfig config;
+
+	/**
+	 * Initialize an object of class BatchRunner and set its configuration.
+	 * @param maxTicks the most ticks an episode runs for.
+	 * @param parallelism the number of episodes running at the same time.
+	 */
+	public BatchRunner(int maxTicks, int parallelism) {
+		this(maxTicks, parallelism, new WorldConfig());
+	}
+
+	/**
+	 * Initialize an object of class BatchRunner whose episodes simulate their worlds with the settings of a configuration.
+	 * Levels are never prefetched, an episode reaches the next level long before a background thread has created it.
+	 * @param maxTicks the most ticks an episode runs for.
+	 * @param parallelism the number of episodes running at the same time.
+	 * @param config the settings of the world of every episode.
+	 */
+	public BatchRunner(int maxTicks, int parallelism, WorldConfig config) {
+		this.maxTicks = maxTicks;
+		pool = new ForkJoinPool(parallelism);
+		this.config = new WorldConfig(config);
+		this.config.setPrefetchLevels(false);
+	}
+
+	/**
+	 * Create the scripted input of an episode, random keys held for a few ticks, mostly up.
+	 * @param seed the seed of the script.
+	 * @param ticks the number of ticks of the script.
+	 * @return the key mask of every tick.
+	 */
+	public static int[] createScript(long seed, int ticks) {
+		// the world uses the seed itself, so the script uses a different sequence
+		Random random = new Random(~seed);
+		int[] script = new int[ticks];
+		int[] keys = {0, KeyMaskInput.UP, KeyMaskInput.UP, KeyMaskInput.LEFT, KeyMaskInput.RIGHT, KeyMaskInput.DOWN};
+		for (int i = 0; i < ticks; i += KEY_HOLD_TICKS) {
+			int mask = keys[random.nextInt(keys.length)];
+			for (int j = i; j < Math.min(ticks, i + KEY_HOLD_TICKS); j++) {
+				script[j] = mask;
+			}
+		}
+		return script;
+	}
+
+	/**
+	 * Play one episode until the game is over or the script ends.
+	 * @param seed the seed of the world and of the scripted input.
+	 * @param script the key mask of every tick.
+	 * @param config the settings of the world.
+	 * @return the result of the episode.
+	 */
+	public static Result runEpisode(long seed, int[] script, WorldConfig config) {
+		World world = new World(seed, new LevelFiles(LEVEL_PATHS), config);
+		KeyMaskInput input = new KeyMaskInput();
+		int ticks = 0;
+		while (ticks < script.length && world.getOutcome() == Outcome.RUNNING) {
+			input.setMask(script[ticks]);
+			world.update(input, App.TICK_MILLIS);
+			ticks++;
+		}
+		return new Result(seed, world.getOutcome(), world.getScore(), world.getLevel(), ticks);
+	}
+
+	/**
+	 * Run a number of episodes in parallel.
+	 * @param firstSeed the seed of the first episode, the next episodes use the following seeds.
+	 * @param episodes the number of episodes.
+	 * @return the results in the order of the seeds.
+	 */
+	public List<Result> run(long firstSeed, int episodes) {
+		List<Callable<Result>> tasks = new ArrayList<>();
+		for (int i = 0; i < episodes; i++) {
+			long seed = firstSeed + i;
+			tasks.add(() -> runEpisode(seed, createScript(seed, maxTicks), config));
+		}
+
+		List<Result> results = new ArrayList<>();
+		try {
+			for (Future<Result> future : pool.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("An episode failed", e);
+		}
+		return results;
+	}
+
+	/**
+	 * Stop the worker threads.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/** Start-up method. Runs the episodes and prints the results.
+	 * @param args Command-line arguments, optionally the number of episodes, the most ticks of an episode,
+	 * the first seed and the number of threads.
+	 */
+	public static void main(String[] args) {
+		int episodes = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_EPISODES;
+		int maxTicks = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_TICKS;
+		long firstSeed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+		int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		AssetCache.setHeadless(true);
+		BatchRunner runner = new BatchRunner(maxTicks, parallelism);
+		long start = System.nanoTime();
+		List<Result> results = runner.run(firstSeed, episodes);
+		long elapsed = System.nanoTime() - start;
+		runner.shutdown();
+
+		EnumMap<Outcome, Integer> outcomes = new EnumMap<>(Outcome.class);
+		long totalScore = 0;
+		long totalTicks = 0;
+		int bestScore = 0;
+		for (Result result : results) {
+			outcomes.merge(result.getOutcome(), 1, Integer::sum);
+			totalScore += result.getScore();
+			totalTicks += result.getTicks();
+			bestScore = Math.max(bestScore, result.getScore());
+		}
+
+		System.out.printf("%d episodes on %d threads in %.3f s, %.1f episodes/s, %.0f ticks/s%n",
+				episodes, parallelism, elapsed / 1e9, episodes * 1e9 / elapsed, totalTicks * 1e9 / elapsed);
+		System.out.printf("outcomes %s, mean score %.2f, best score %d%n",
+				outcomes, (double)totalScore / episodes, bestScore);
+	}
+}
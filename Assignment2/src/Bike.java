@@ -1,5 +1,3 @@
-import org.newdawn.slick.Input;
-
 /**
  * Represents a special sprite, goes there and back between two points.
  */
@@ -18,8 +16,17 @@ public class Bike extends Vehicle {
 		super(BIKE_PATH, x, y, BIKE_SPEED, moveRight);
 	}
 	
+	/**
+	 * A bike turns back instead of wrapping around, so it is not moved by a LaneStore.
+	 * @return false.
+	 */
 	@Override
-	public void update(Input input, int delta) {
+	public boolean movesInLane() {
+		return false;
+	}
+	
+	@Override
+	public void update(InputSource input, int delta) {
 		// according to the direction of movement, move the bike
 		move(getSpeed() * delta * (getMoveRight() ? 1 : -1), 0);
 		
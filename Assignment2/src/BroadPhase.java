@@ -0,0 +1,11 @@
+/**
+ * The ways World finds the pairs of sprites which may collide, before testing their bounds.
+ */
+public enum BroadPhase {
+	/** a uniform grid of tiles, and the player's queries by row */
+	GRID,
+	/** the sprites sorted by x, kept in order from frame to frame */
+	SWEEP_AND_PRUNE,
+	/** every pair of sprites, the loop the game started with */
+	BRUTE_FORCE
+}
@@ -12,6 +12,6 @@ public class Bulldozer extends Vehicle {
      * @param moveRight represents the direction of movement.
      */
 	public Bulldozer(float x, float y, boolean moveRight) {
-		super(BULLDOZER_PATH, x, y, BULLDOZER_SPEED, moveRight, new String[] {Sprite.SOLID});
+		super(BULLDOZER_PATH, x, y, BULLDOZER_SPEED, moveRight, new Tag[] {Sprite.SOLID});
 	}
 }
\ No newline at end of file
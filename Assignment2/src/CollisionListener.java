@@ -0,0 +1,12 @@
+/**
+ * Receives every collision a world handles, in the order they are handled,
+ * such as a check comparing broad phases.
+ */
+public interface CollisionListener {
+	/**
+	 * Called right before sprite.onCollision(other).
+	 * @param sprite the sprite whose onCollision is called.
+	 * @param other the sprite it collides with.
+	 */
+	void collided(Sprite sprite, Sprite other);
+}
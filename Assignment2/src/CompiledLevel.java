@@ -0,0 +1,203 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Compiles level files into a binary format and reads them back through a memory-mapped buffer.
+ * The format is a header, a table of sprite types and one packed entry per sprite:
+ * <pre>
+ * int magic, int version, int number of types, int number of entries
+ * for every type: short length, UTF-8 name
+ * for every entry: byte type, byte flags, float x, float y
+ * </pre>
+ * Reading a compiled level creates no string per entry.
+ */
+public class CompiledLevel {
+	/** extension of compiled level files */
+	public static final String EXTENSION = ".lvb";
+	
+	private static final int MAGIC = 0x534C5642;
+	private static final int VERSION = 1;
+	private static final String LEVEL_EXTENSION = ".lvl";
+	private static final String LEVEL_DIRECTORY = "assets/levels";
+	private static final String DELIMITER = ",";
+	private static final int FLAG_MOVE_RIGHT = 1;
+	private static final int MAX_TYPES = 256;
+	// bytes of the header and of every entry
+	private static final int HEADER_SIZE = 16;
+	private static final int ENTRY_SIZE = 10;
+	
+	/**
+	 * Accesses the path of the compiled file of a level file.
+	 * @param levelPath the path of the level file.
+	 * @return the path of its compiled file.
+	 */
+	public static String getCompiledPath(String levelPath) {
+		if (levelPath.endsWith(LEVEL_EXTENSION)) {
+			levelPath = levelPath.substring(0, levelPath.length() - LEVEL_EXTENSION.length());
+		}
+		return levelPath + EXTENSION;
+	}
+	
+	/**
+	 * detect whether a compiled file exists and is not older than its level file.
+	 * @param levelPath the path of the level file.
+	 * @param compiledPath the path of the compiled file.
+	 * @return true when the compiled file can be used.
+	 */
+	public static boolean isUpToDate(String levelPath, String compiledPath) {
+		File compiled = new File(compiledPath);
+		File level = new File(levelPath);
+		return compiled.isFile() && (!level.exists() || compiled.lastModified() >= level.lastModified());
+	}
+	
+	/**
+	 * Compile a level file.
+	 * @param levelPath the path of the level file.
+	 * @param compiledPath the path of the written compiled file.
+	 * @throws IOException if a file cannot be read or written.
+	 */
+	public static void compile(String levelPath, String compiledPath) throws IOException {
+		LinkedHashMap<String, Integer> types = new LinkedHashMap<>();
+		ArrayList<String[]> entries = new ArrayList<>();
+		try (BufferedReader br = new BufferedReader(new FileReader(levelPath))) {
+			String text;
+			while((text = br.readLine()) != null) {
+				String[] spriteInfo = text.split(DELIMITER);
+				if (!types.containsKey(spriteInfo[0])) {
+					if (types.size() == MAX_TYPES) {
+						throw new IOException("Too many sprite types in " + levelPath);
+					}
+					types.put(spriteInfo[0], types.size());
+				}
+				entries.add(spriteInfo);
+			}
+		}
+		
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(compiledPath)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(types.size());
+			out.writeInt(entries.size());
+			for (String type : types.keySet()) {
+				out.writeUTF(type);
+			}
+			for (String[] spriteInfo : entries) {
+				boolean moveRight = spriteInfo.length > 3 && Boolean.parseBoolean(spriteInfo[3]);
+				out.writeByte(types.get(spriteInfo[0]));
+				out.writeByte(moveRight ? FLAG_MOVE_RIGHT : 0);
+				out.writeFloat(Float.parseFloat(spriteInfo[1]));
+				out.writeFloat(Float.parseFloat(spriteInfo[2]));
+			}
+		}
+	}
+	
+	/**
+	 * Create all sprites described by a compiled level file.
+	 * @param compiledPath the path of the compiled file.
+	 * @return the sprites in the order of the level file.
+	 * @throws IOException if the file cannot be read or is not a compiled level.
+	 */
+	public static ArrayList<Sprite> read(String compiledPath) throws IOException {
+		return read(compiledPath, null);
+	}
+	
+	/**
+	 * Create all sprites described by a compiled level file, taking them from pools.
+	 * @param compiledPath the path of the compiled file.
+	 * @param pools the pools of the sprites, null to create new sprites.
+	 * @return the sprites in the order of the level file.
+	 * @throws IOException if the file cannot be read, is not a compiled level or is truncated or corrupt.
+	 */
+	public static ArrayList<Sprite> read(String compiledPath, SpritePools pools) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(Paths.get(compiledPath), StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Not a compiled level: " + compiledPath);
+		}
+		int numTypes = buffer.getInt();
+		int numEntries = buffer.getInt();
+		if (numTypes < 0 || numTypes > MAX_TYPES || numEntries < 0) {
+			throw new IOException("Corrupt compiled level: " + compiledPath);
+		}
+		String[] types = new String[numTypes];
+		for (int i = 0; i < numTypes; i++) {
+			types[i] = readType(buffer, compiledPath);
+		}
+		
+		// the whole file is checked before any sprite is created, a file cut short is not half read
+		if (buffer.remaining() != (long)numEntries * ENTRY_SIZE) {
+			throw new IOException("Truncated compiled level: " + compiledPath);
+		}
+		int start = buffer.position();
+		for (int i = 0; i < numEntries; i++) {
+			if ((buffer.get(start + i * ENTRY_SIZE) & 0xFF) >= numTypes) {
+				throw new IOException("Corrupt compiled level: " + compiledPath);
+			}
+		}
+		
+		ArrayList<Sprite> sprites = new ArrayList<>(numEntries);
+		for (int i = 0; i < numEntries; i++) {
+			String type = types[buffer.get() & 0xFF];
+			boolean moveRight = (buffer.get() & FLAG_MOVE_RIGHT) != 0;
+			float x = buffer.getFloat();
+			float y = buffer.getFloat();
+			Sprite sprite = World.createSprite(type, x, y, moveRight, pools);
+			if (sprite == null) {
+				// the sprites taken so far go back, the level is read from the CSV instead
+				if (pools != null) {
+					pools.releaseAll(sprites);
+				}
+				throw new IOException("Unknown sprite type " + type + " in compiled level: " + compiledPath);
+			}
+			sprites.add(sprite);
+		}
+		return sprites;
+	}
+	
+	private static String readType(ByteBuffer buffer, String compiledPath) throws IOException {
+		// written by DataOutputStream.writeUTF, names of sprite types are ASCII
+		if (buffer.remaining() < 2 || buffer.remaining() - 2 < (buffer.getShort(buffer.position()) & 0xFFFF)) {
+			throw new IOException("Truncated compiled level: " + compiledPath);
+		}
+		byte[] name = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(name);
+		return new String(name, StandardCharsets.UTF_8).intern();
+	}
+	
+	/** Start-up method. Compiles level files next to themselves.
+	 * @param args Command-line arguments, the level files to compile, all levels in assets by default.
+	 * @throws IOException if a file cannot be read or written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			File[] files = new File(LEVEL_DIRECTORY).listFiles((dir, name) -> name.endsWith(LEVEL_EXTENSION));
+			if (files == null) {
+				throw new IOException("Cannot list " + LEVEL_DIRECTORY);
+			}
+			args = new String[files.length];
+			for (int i = 0; i < files.length; i++) {
+				args[i] = files[i].getPath();
+			}
+		}
+		for (String levelPath : args) {
+			String compiledPath = getCompiledPath(levelPath);
+			compile(levelPath, compiledPath);
+			System.out.println(levelPath + " -> " + compiledPath);
+		}
+	}
+}
@@ -1,8 +1,5 @@
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
-import org.newdawn.slick.Input;
 
 /**
  * Represents a special sprit, extraLife.
@@ -19,77 +16,94 @@ public class ExtraLife extends MovingObject {
 	private static final float MOVE_DISTANCE = World.TILE_SIZE;
 	private static final int LOOP_PERIOD_MILLISECOND = 14000;
 	
-	private boolean visible;
+	// the world the extra life appears in, it also decides the random numbers
+	private final World world;
 	private Log onLog;
-	private Timer startTimer;
-	private Timer moveTimer;
-	private Timer restartTimer;
+	private Scheduler scheduler;
+	private ScheduledEvent startEvent;
+	private ScheduledEvent moveEvent;
+	private ScheduledEvent restartEvent;
 	// the relative x position on the selected log object
 	private float relativeX;
 	
     /** 
      * Initialize an object of the class ExtraLife and set its configuration
+     * @param world the world the extra life appears in.
      */
-	public ExtraLife() {
-		super(EXTRA_LIFE_PATH, 0, 0, 0, true, new String[] {Sprite.EXTRA_LIFE});
-		visible = false;
+	public ExtraLife(World world) {
+		super(EXTRA_LIFE_PATH, 0, 0, 0, true, new Tag[] {Sprite.EXTRA_LIFE});
+		this.world = world;
+		setHidden(true);
 		relativeX = 0;
-		startTimer = new Timer();
+	}
+	
+	@Override
+	public void startEvents(Scheduler scheduler) {
+		this.scheduler = scheduler;
+		startEvent = scheduler.createEvent(this::start);
+		moveEvent = scheduler.createEvent(this::moveOnLog);
+		restartEvent = scheduler.createEvent(this::restart);
 		
 		// start the loop
-		startTimer(getStartSeconds() * 1000, LOOP_PERIOD_MILLISECOND);
+		scheduler.schedule(startEvent, getStartSeconds() * 1000, 0);
 	}
 	
-	private void startTimer(long delay, long period) {
-		// set a timer to start the loop
-		startTimer.schedule(new TimerTask() {
-			public void run() {
-				moveTimer = new Timer();
-				if (restartTimer != null) {
-					restartTimer.cancel();
-				}
-				restartTimer = new Timer();
-				restartTimer(period);
-				relativeX = 0;
-				getOnLog(World.getSprites());
-				visible = true;
-				moveTimer(MOVE_FREQUENCY_MILLISECOND);
-				startTimer.cancel();
-			}
-		}, delay);
+	/**
+	 * Hide the extra life again for a new level, its events are started with the scheduler of the level.
+	 */
+	void startLevel() {
+		reset(0, 0);
+		setMoveRight(true);
+		setHidden(true);
+		onLog = null;
+		relativeX = 0;
 	}
 	
-	private void restartTimer(long delay) {
-		// set a timer to restart the loop
-		restartTimer.schedule(new TimerTask() {
-			public void run() {
-				visible = false;
-				if(moveTimer != null) {
-					moveTimer.cancel();
-				}
-				if(startTimer != null) {
-					startTimer.cancel();
-				}	
-				startTimer = new Timer();
-				startTimer(getStartSeconds() * 1000, LOOP_PERIOD_MILLISECOND);
-			}
-		}, delay);
+	@Override
+	public void stopEvents(Scheduler scheduler) {
+		scheduler.removeEvent(startEvent);
+		scheduler.removeEvent(moveEvent);
+		scheduler.removeEvent(restartEvent);
+	}
+	
+	private void start() {
+		// appear on a log, move on it and restart the loop after a period
+		scheduler.schedule(restartEvent, LOOP_PERIOD_MILLISECOND, 0);
+		relativeX = 0;
+		getOnLog(world.getSprites());
+		setHidden(false);
+		scheduler.schedule(moveEvent, MOVE_FREQUENCY_MILLISECOND, MOVE_FREQUENCY_MILLISECOND);
+	}
+	
+	private void restart() {
+		// disappear and wait for the next start
+		setHidden(true);
+		moveEvent.cancel();
+		restartEvent.cancel();
+		scheduler.schedule(startEvent, getStartSeconds() * 1000, 0);
 	}
 	
 	private int getStartSeconds() {
-		return new Random().nextInt(RANDOM_SECOND_TO - RANDOM_SECOND_FROM + 1) + RANDOM_SECOND_FROM;
+		return world.nextRandom(RANDOM_SECOND_TO - RANDOM_SECOND_FROM + 1) + RANDOM_SECOND_FROM;
 	}
 	
 	private void getOnLog(ArrayList<Sprite> sprites) {
 		/* select a log or long log object from World.sprites randomly,
-		   set coordinate based on selected log object. */
-		ArrayList<Sprite> logs = new ArrayList<Sprite> ();
-		for (Sprite temp : sprites) {
-			if (temp.getClass().getName() == "Log") {
-				logs.add(temp);
+		   set coordinate based on selected log object.
+		   the logs are counted and then the selected one is found again, without a list of logs */
+		int numLogs = 0;
+		for (int i = 0; i < sprites.size(); i++) {
+			if (sprites.get(i) instanceof Log) {
+				numLogs++;
+			}
+		}
+		int selected = world.nextRandom(numLogs);
+		for (int i = 0; i < sprites.size(); i++) {
+			if (sprites.get(i) instanceof Log && selected-- == 0) {
+				onLog = (Log)sprites.get(i);
+				break;
 			}
 		}
-		onLog = (Log)logs.get(new Random().nextInt(logs.size()));
 		setX(onLog.getX());
 		setY(onLog.getY());
 	}
@@ -100,14 +114,10 @@ public class ExtraLife extends MovingObject {
      */
 	public void setVisible(boolean visible) {
 		// when the visible becomes true to false, ExtraLife restarts.
-		if(visible == false && this.visible == true) {
-			if(restartTimer != null) {
-				restartTimer.cancel();
-			}
-			restartTimer = new Timer();
-			restartTimer(0);
+		if(visible == false && isHidden() == false) {
+			restart();
 		}
-		this.visible = visible;
+		setHidden(!visible);
 	}
 	
 	/**
@@ -115,42 +125,51 @@ public class ExtraLife extends MovingObject {
 	 * @return	the visible state of the extraLife object.
 	 */
 	public boolean getVisible() {
-		return visible;
+		return !isHidden();
 	}
 	
-	private void moveTimer(long period) {
-		// set a timer on a fixed frequency to move and make sure it always contacts Onlog
-		moveTimer.schedule(new TimerTask() {
-			public void run() {
-				if (Math.abs(relativeX + MOVE_DISTANCE * (getMoveRight() ? 1 : -1)) > onLog.getImageWidth() / 2) {
-					setMoveRight(!getMoveRight());
-					relativeX += MOVE_DISTANCE * (getMoveRight() ? 1 : -1);
-				} else {
-					relativeX += MOVE_DISTANCE * (getMoveRight() ? 1 : -1);
-				}
-			}
-		}, period, period);
-	}
-	
-	@Override
-	public void update(Input input, int delta) {
-		// only update it when visible is true
-		if (visible == false) {
+	private void moveOnLog() {
+		// move on a fixed frequency and make sure it always contacts onLog
+		if (Math.abs(relativeX + MOVE_DISTANCE * (getMoveRight() ? 1 : -1)) > onLog.getImageWidth() / 2) {
+			setMoveRight(!getMoveRight());
+			relativeX += MOVE_DISTANCE * (getMoveRight() ? 1 : -1);
 		} else {
-			setX(onLog.getX() + relativeX);
+			relativeX += MOVE_DISTANCE * (getMoveRight() ? 1 : -1);
 		}
 	}
 	
 	/**
-	 * Render the sprite when it is visible.
+	 * An extra life follows its log, so it is not moved by a LaneStore.
+	 * @return false.
 	 */
 	@Override
-	public void render() {
-		// only render it when visible is true
-		if (visible == false) {
-			return;
+	public boolean movesInLane() {
+		return false;
+	}
+	
+	@Override
+	public void writeState(ByteBuffer out) {
+		super.writeState(out);
+		out.put((byte)(isHidden() ? 0 : 1));
+		out.putFloat(relativeX);
+		out.putInt(indexOf(onLog));
+	}
+	
+	@Override
+	public void readState(ByteBuffer in, ArrayList<Sprite> sprites) {
+		super.readState(in, sprites);
+		// the events are restored by the scheduler
+		setHidden(in.get() == 0);
+		relativeX = in.getFloat();
+		onLog = (Log)spriteAt(in.getInt(), sprites);
+	}
+	
+	@Override
+	public void update(InputSource input, int delta) {
+		// only update it when visible is true
+		if (isHidden()) {
 		} else {
-			super.render();
+			setX(onLog.getX() + relativeX);
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+/**
+ * Turns the variable time of frames into a whole number of fixed simulation ticks.
+ * Time left over is kept for the next frame and tells rendering how far it is between two ticks.
+ * When frames are so slow that the simulation cannot catch up, at most a capped number of ticks
+ * run in a frame and the rest of the time is dropped.
+ */
+public class FixedStepLoop {
+	private final int tickMillis;
+	private final int maxTicksPerFrame;
+	private int accumulator;
+	
+	/** 
+     * Initialize an object of class FixedStepLoop and set its configuration.
+     * @param tickMillis length of a tick, in milliseconds, the tick rate is 1000 / tickMillis.
+     * @param maxTicksPerFrame the most ticks run in one frame.
+     */
+	public FixedStepLoop(int tickMillis, int maxTicksPerFrame) {
+		if (tickMillis <= 0 || maxTicksPerFrame <= 0) {
+			throw new IllegalArgumentException("Tick length and ticks per frame must be positive");
+		}
+		this.tickMillis = tickMillis;
+		this.maxTicksPerFrame = maxTicksPerFrame;
+	}
+	
+	/**
+	 * Accesses the length of a tick.
+	 * @return the length of a tick, in milliseconds.
+	 */
+	public int getTickMillis() {
+		return tickMillis;
+	}
+	
+	/**
+	 * Add the time of a frame.
+	 * @param delta Time passed since last frame (milliseconds).
+	 * @return the number of ticks to simulate in this frame.
+	 */
+	public int advance(int delta) {
+		accumulator += delta;
+		int ticks = accumulator / tickMillis;
+		if (ticks > maxTicksPerFrame) {
+			ticks = maxTicksPerFrame;
+			accumulator %= tickMillis;
+		} else {
+			accumulator -= ticks * tickMillis;
+		}
+		return ticks;
+	}
+	
+	/**
+	 * Accesses how far the current frame is between the previous tick and the next one.
+	 * @return a value from 0 to 1.
+	 */
+	public float getAlpha() {
+		return (float)accumulator / tickMillis;
+	}
+}
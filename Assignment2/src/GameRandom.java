@@ -0,0 +1,66 @@
+import java.nio.ByteBuffer;
+
+/**
+ * The random generator of a world, the same sequence as a java.util.Random created with the same seed.
+ * Unlike java.util.Random its state can be written into a snapshot and read back.
+ */
+public class GameRandom {
+	/** the size of the state of the generator in a snapshot, in bytes */
+	static final int STATE_SIZE = Long.BYTES;
+
+	// the linear congruential generator of java.util.Random
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	private long state;
+
+	/**
+	 * Initialize an object of class GameRandom with a seed.
+	 * @param seed the seed, generators with the same seed draw the same numbers.
+	 */
+	public GameRandom(long seed) {
+		state = (seed ^ MULTIPLIER) & MASK;
+	}
+
+	/**
+	 * Draw a random number.
+	 * @param bound the upper bound, exclusive, it must be positive.
+	 * @return a random number from 0 to bound - 1.
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("bound must be positive");
+		}
+		int r = next();
+		int m = bound - 1;
+		if ((bound & m) == 0) {
+			return (int)((bound * (long)r) >> 31);
+		}
+		for (int u = r; u - (r = u % bound) + m < 0; u = next()) {
+		}
+		return r;
+	}
+
+	// the next 31 random bits
+	private int next() {
+		state = (state * MULTIPLIER + ADDEND) & MASK;
+		return (int)(state >>> 17);
+	}
+
+	/**
+	 * Write the state of the generator, for a snapshot.
+	 * @param out the buffer receiving STATE_SIZE bytes.
+	 */
+	void writeState(ByteBuffer out) {
+		out.putLong(state);
+	}
+
+	/**
+	 * Restore the state written by writeState, the generator draws the same numbers again.
+	 * @param in the buffer holding the state.
+	 */
+	void readState(ByteBuffer in) {
+		state = in.getLong();
+	}
+}
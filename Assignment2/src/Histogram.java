@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+/**
+ * Records a distribution of non-negative values, such as durations in nanoseconds, in log-linear buckets.
+ * Every power of two is split into SUB_BUCKETS buckets, so a value is known within about 6 percent,
+ * whatever its size. Recording a value is a few shifts and an increment, it never allocates.
+ */
+public class Histogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// values below SUB_BUCKETS have a bucket each, then SUB_BUCKETS buckets for every power of two
+	private static final int NUM_BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final long[] counts = new long[NUM_BUCKETS];
+	private long count;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max;
+
+	/**
+	 * Record a value.
+	 * @param value the value, negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts[bucketOf(value)]++;
+		count++;
+		sum += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Forget every recorded value.
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	/**
+	 * Accesses the number of recorded values.
+	 * @return the number of values.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Accesses the smallest recorded value.
+	 * @return the smallest value, 0 when nothing is recorded.
+	 */
+	public long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	/**
+	 * Accesses the largest recorded value.
+	 * @return the largest value, 0 when nothing is recorded.
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Accesses the mean of the recorded values.
+	 * @return the mean, 0 when nothing is recorded.
+	 */
+	public double getMean() {
+		return count == 0 ? 0 : (double)sum / count;
+	}
+
+	/**
+	 * Accesses the value below or at which a percentage of the recorded values are.
+	 * @param percentile the percentage, from 0 to 100.
+	 * @return the largest value of the bucket reaching the percentage, never more than the largest value.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				return Math.min(max, highestValueOf(i));
+			}
+		}
+		return max;
+	}
+
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		// the highest bit tells the power of two, the next bits tell the bucket inside it
+		int power = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int shift = power - SUB_BUCKET_BITS;
+		int sub = (int)(value >>> shift) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+	}
+
+	private static long highestValueOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		long lowest = (long)(SUB_BUCKETS + sub) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,12 @@
+/**
+ * Represents a source of keyboard input for the game.
+ * Key codes are the ones defined by org.newdawn.slick.Input.
+ */
+public interface InputSource {
+	/**
+	 * detect whether a key has been pressed since the last update.
+	 * @param key the key code, such as Input.KEY_LEFT.
+	 * @return a boolean of result that whether the key has been pressed.
+	 */
+	boolean isKeyPressed(int key);
+}
@@ -0,0 +1,81 @@
+import org.newdawn.slick.Input;
+
+/**
+ * Realizes an input source backed by a bitmask of the keys used by the player,
+ * so the game can be driven without a display.
+ */
+public class KeyMaskInput implements InputSource {
+	/** bit of the left arrow key */
+	public static final int LEFT = 1;
+	/** bit of the right arrow key */
+	public static final int RIGHT = 1 << 1;
+	/** bit of the up arrow key */
+	public static final int UP = 1 << 2;
+	/** bit of the down arrow key */
+	public static final int DOWN = 1 << 3;
+	
+	private int mask;
+	
+	/**
+	 * Sets the keys pressed in the next update.
+	 * @param mask a combination of LEFT, RIGHT, UP and DOWN.
+	 */
+	public void setMask(int mask) {
+		this.mask = mask;
+	}
+	
+	/**
+	 * Accesses the keys pressed in the next update.
+	 * @return a combination of LEFT, RIGHT, UP and DOWN.
+	 */
+	public int getMask() {
+		return mask;
+	}
+	
+	@Override
+	public boolean isKeyPressed(int key) {
+		return (mask & toBit(key)) != 0;
+	}
+	
+	/**
+	 * Read the keys used by the player from another input source.
+	 * @param input the source of keyboard input.
+	 * @return a combination of LEFT, RIGHT, UP and DOWN.
+	 */
+	public static int readMask(InputSource input) {
+		int mask = 0;
+		if (input.isKeyPressed(Input.KEY_LEFT)) {
+			mask |= LEFT;
+		}
+		if (input.isKeyPressed(Input.KEY_RIGHT)) {
+			mask |= RIGHT;
+		}
+		if (input.isKeyPressed(Input.KEY_UP)) {
+			mask |= UP;
+		}
+		if (input.isKeyPressed(Input.KEY_DOWN)) {
+			mask |= DOWN;
+		}
+		return mask;
+	}
+	
+	/**
+	 * Converts a Slick key code to its bit in the mask.
+	 * @param key the key code, such as Input.KEY_LEFT.
+	 * @return the bit of the key, or 0 when the key is not used by the game.
+	 */
+	public static int toBit(int key) {
+		switch (key) {
+		case Input.KEY_LEFT:
+			return LEFT;
+		case Input.KEY_RIGHT:
+			return RIGHT;
+		case Input.KEY_UP:
+			return UP;
+		case Input.KEY_DOWN:
+			return DOWN;
+		default:
+			return 0;
+		}
+	}
+}
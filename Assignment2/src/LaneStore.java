@@ -0,0 +1,222 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Keeps the position and movement of moving objects in parallel primitive arrays.
+ * Objects on the same row form a lane and take consecutive slots, so a whole lane is
+ * advanced by one tight loop instead of one virtual update call per object.
+ * Attached sprites read and write their position through the store.
+ * Lanes never interact, so they can also be advanced in parallel, with the same result.
+ */
+public class LaneStore {
+	// the most objects moved by one task of a parallel advance, longer lanes are split
+	private static final int CHUNK_SLOTS = 1024;
+	
+	private final float[] x;
+	private final float[] y;
+	private final float[] speed;
+	// 1 when moving right, -1 when moving left
+	private final float[] direction;
+	private final float[] halfWidth;
+	private final float[] halfHeight;
+	private final MovingObject[] objects;
+	// the first slot of every lane, laneStart[numLanes] is the number of slots
+	private final int[] laneStart;
+	private final int numLanes;
+	// tasks of a parallel advance, built on first use and reused every tick
+	private AdvanceTask parallelRoot;
+	private int parallelDelta;
+	
+	/**
+	 * Moves the objects of a range of chunks, by splitting it in two until one chunk is left.
+	 */
+	private class AdvanceTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+		private final AdvanceTask left;
+		private final AdvanceTask right;
+		
+		AdvanceTask(int[] chunkStarts, int firstChunk, int lastChunk) {
+			from = chunkStarts[firstChunk];
+			to = chunkStarts[lastChunk];
+			if (lastChunk - firstChunk > 1) {
+				int middle = (firstChunk + lastChunk) >>> 1;
+				left = new AdvanceTask(chunkStarts, firstChunk, middle);
+				right = new AdvanceTask(chunkStarts, middle, lastChunk);
+			} else {
+				left = null;
+				right = null;
+			}
+		}
+		
+		@Override
+		protected void compute() {
+			if (left == null) {
+				advanceSlots(from, to, parallelDelta);
+				return;
+			}
+			// the tasks ran in the previous tick, they are reset to run again
+			left.reinitialize();
+			right.reinitialize();
+			invokeAll(left, right);
+		}
+	}
+	
+	/** 
+     * Initialize an object of class LaneStore and attach every object moving in a lane.
+     * @param sprites the sprites of the world, objects of one lane keep their order.
+     */
+	public LaneStore(List<Sprite> sprites) {
+		// group objects by row
+		LinkedHashMap<Float, ArrayList<MovingObject>> lanes = new LinkedHashMap<>();
+		int count = 0;
+		for (Sprite sprite : sprites) {
+			if (sprite instanceof MovingObject && ((MovingObject)sprite).movesInLane()) {
+				lanes.computeIfAbsent(sprite.getY(), k -> new ArrayList<>()).add((MovingObject)sprite);
+				count++;
+			}
+		}
+		
+		x = new float[count];
+		y = new float[count];
+		speed = new float[count];
+		direction = new float[count];
+		halfWidth = new float[count];
+		halfHeight = new float[count];
+		objects = new MovingObject[count];
+		numLanes = lanes.size();
+		laneStart = new int[numLanes + 1];
+		
+		int slot = 0;
+		int lane = 0;
+		for (ArrayList<MovingObject> laneObjects : lanes.values()) {
+			laneStart[lane++] = slot;
+			for (MovingObject object : laneObjects) {
+				x[slot] = object.getX();
+				y[slot] = object.getY();
+				speed[slot] = object.getSpeed();
+				direction[slot] = object.getMoveRight() ? 1 : -1;
+				halfWidth[slot] = object.getImageWidth() / 2;
+				halfHeight[slot] = object.getImageHeight() / 2;
+				objects[slot] = object;
+				object.attach(this, slot);
+				slot++;
+			}
+		}
+		laneStart[numLanes] = slot;
+	}
+	
+	/**
+	 * Accesses the number of lanes.
+	 * @return the number of lanes.
+	 */
+	public int getNumLanes() {
+		return numLanes;
+	}
+	
+	/**
+	 * Accesses the number of objects in the store.
+	 * @return the number of objects.
+	 */
+	public int size() {
+		return laneStart[numLanes];
+	}
+	
+	/**
+	 * Move every object in the store.
+	 * @param delta Time passed since last frame (milliseconds).
+	 */
+	public void advance(int delta) {
+		advanceSlots(0, laneStart[numLanes], delta);
+	}
+	
+	/**
+	 * Move every object in the store, lanes in parallel on a pool, and wait for all of them.
+	 * Every object is moved by the same arithmetic as advance, so the positions are the same.
+	 * @param delta Time passed since last frame (milliseconds).
+	 * @param pool the pool running the lanes.
+	 */
+	public void advanceParallel(int delta, ForkJoinPool pool) {
+		if (size() == 0) {
+			return;
+		}
+		if (parallelRoot == null) {
+			parallelRoot = createTasks();
+		}
+		// the write is seen by the tasks, invoking a task happens after it
+		parallelDelta = delta;
+		parallelRoot.reinitialize();
+		pool.invoke(parallelRoot);
+	}
+	
+	private AdvanceTask createTasks() {
+		// every lane in chunks of at most CHUNK_SLOTS objects, a chunk never spans two lanes
+		ArrayList<Integer> starts = new ArrayList<>();
+		for (int lane = 0; lane < numLanes; lane++) {
+			for (int slot = laneStart[lane]; slot < laneStart[lane + 1]; slot += CHUNK_SLOTS) {
+				starts.add(slot);
+			}
+		}
+		int[] chunkStarts = new int[starts.size() + 1];
+		for (int i = 0; i < starts.size(); i++) {
+			chunkStarts[i] = starts.get(i);
+		}
+		chunkStarts[starts.size()] = size();
+		return new AdvanceTask(chunkStarts, 0, starts.size());
+	}
+	
+	/**
+	 * Move every object in one lane.
+	 * @param lane the index of the lane.
+	 * @param delta Time passed since last frame (milliseconds).
+	 */
+	public void advanceLane(int lane, int delta) {
+		advanceSlots(laneStart[lane], laneStart[lane + 1], delta);
+	}
+	
+	private void advanceSlots(int from, int to, int delta) {
+		// the same arithmetic as MovingObject.update, including the wraparound
+		for (int i = from; i < to; i++) {
+			float newX = x[i] + speed[i] * delta * direction[i];
+			if (newX > App.SCREEN_WIDTH + halfWidth[i] || newX < -halfWidth[i]
+			 || y[i] > App.SCREEN_HEIGHT + halfHeight[i] || y[i] < -halfHeight[i]) {
+				newX = direction[i] > 0 ? -halfWidth[i] : App.SCREEN_WIDTH + halfWidth[i];
+			}
+			x[i] = newX;
+		}
+	}
+	
+	/**
+	 * Stop moving the object of a slot, when it is removed from the world.
+	 * The slot stays empty until the store is built again for the next level.
+	 * @param slot the slot of the object.
+	 */
+	void release(int slot) {
+		speed[slot] = 0;
+		objects[slot] = null;
+	}
+	
+	float getX(int slot) {
+		return x[slot];
+	}
+	
+	void setX(int slot, float x) {
+		this.x[slot] = x;
+	}
+	
+	float getY(int slot) {
+		return y[slot];
+	}
+	
+	void setY(int slot, float y) {
+		this.y[slot] = y;
+	}
+	
+	void setMoveRight(int slot, boolean moveRight) {
+		direction[slot] = moveRight ? 1 : -1;
+	}
+}
@@ -0,0 +1,29 @@
+import java.util.ArrayList;
+
+/**
+ * Levels read from level files, one file per level, played in order.
+ */
+public class LevelFiles implements LevelSource {
+	private final String[] levelPaths;
+	
+	/**
+	 * Initialize an object of class LevelFiles and set its configuration.
+	 * @param levelPaths the paths of the level files, the first one is level 1.
+	 */
+	public LevelFiles(String... levelPaths) {
+		if (levelPaths.length == 0) {
+			throw new IllegalArgumentException("No level to play");
+		}
+		this.levelPaths = levelPaths;
+	}
+	
+	@Override
+	public boolean hasLevel(int level) {
+		return level >= 1 && level <= levelPaths.length;
+	}
+	
+	@Override
+	public ArrayList<Sprite> createLevel(int level, SpritePools pools) {
+		return World.readLevelFile(levelPaths[level - 1], pools);
+	}
+}
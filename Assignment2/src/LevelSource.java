@@ -0,0 +1,25 @@
+import java.util.ArrayList;
+
+/**
+ * Represents where the sprites of every level of a world come from, such as level files
+ * or a generator.
+ */
+public interface LevelSource {
+	/**
+	 * detect whether a level exists, the game is won after the last one.
+	 * @param level the number of the level, starting from 1.
+	 * @return true when the level can be created.
+	 */
+	boolean hasLevel(int level);
+	
+	/**
+	 * Create all sprites of a level, without the player and the extra life.
+	 * Tiles come first, so they can be baked into the background.
+	 * The next level is created on a background thread while the current one is played,
+	 * so it must not change anything shared with the game.
+	 * @param level the number of the level, starting from 1.
+	 * @param pools the pools to take the sprites from, null to create new sprites.
+	 * @return the sprites in the order they are updated and drawn.
+	 */
+	ArrayList<Sprite> createLevel(int level, SpritePools pools);
+}
@@ -1,4 +1,5 @@
-import org.newdawn.slick.Input;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 /**
  * Represents one kind of sprites. It has speed and move direction.
@@ -30,7 +31,7 @@ public abstract class MovingObject extends Sprite {
      * @param moveRight represents the direction of movement.
      * @param tags sprite's tags
      */
-	public MovingObject(String imageSrc, float x, float y, float speed, boolean moveRight, String[] tags) {
+	public MovingObject(String imageSrc, float x, float y, float speed, boolean moveRight, Tag[] tags) {
 		super(imageSrc, x, y, tags);
 		this.moveRight = moveRight;
 		this.speed = speed;
@@ -58,6 +59,36 @@ public abstract class MovingObject extends Sprite {
 	 */
 	public void setMoveRight(boolean moveRight) {
 		this.moveRight = moveRight;
+		if (isInLane()) {
+			getLane().setMoveRight(getLaneSlot(), moveRight);
+		}
+	}
+	
+	@Override
+	void reuse(float x, float y, boolean moveRight) {
+		super.reuse(x, y, moveRight);
+		this.moveRight = moveRight;
+	}
+	
+	/**
+	 * detect whether the object only moves along its row and wraps around the screen,
+	 * so it can be moved by a LaneStore.
+	 * @return true when a LaneStore can move the object.
+	 */
+	public boolean movesInLane() {
+		return true;
+	}
+	
+	@Override
+	public void writeState(ByteBuffer out) {
+		super.writeState(out);
+		out.put((byte)(moveRight ? 1 : 0));
+	}
+	
+	@Override
+	public void readState(ByteBuffer in, ArrayList<Sprite> sprites) {
+		super.readState(in, sprites);
+		setMoveRight(in.get() != 0);
 	}
 	
 	private final float getInitialX() {
@@ -66,7 +97,7 @@ public abstract class MovingObject extends Sprite {
 	}
 	
 	@Override
-	public void update(Input input, int delta) {
+	public void update(InputSource input, int delta) {
 		// according to the direction of movement, move the MovingObject
 		move(speed * delta * (moveRight ? 1 : -1), 0);
 		
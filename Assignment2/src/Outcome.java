@@ -0,0 +1,11 @@
+/**
+ * Represents the state of a game: still running, won or lost.
+ */
+public enum Outcome {
+	/** the game is still running */
+	RUNNING,
+	/** the player has filled all holes of the last level */
+	WON,
+	/** the player has lost all lives */
+	LOST
+}
@@ -1,3 +1,4 @@
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import org.newdawn.slick.Input;
 import utilities.BoundingBox;
@@ -17,6 +18,10 @@ public class Player extends Sprite {
 	private BoundingBox downBound;
 	private BoundingBox leftBound;
 	private BoundingBox rightBound;
+	// covers the player and all extra bounds
+	private BoundingBox broadBound;
+	// the bound of the player and its extra bounds, tested together by the world
+	private BoundingBox[] collisionBounds;
 	
 	// save potentially solid sprites
 	private Sprite upSolidSprite = null;
@@ -36,20 +41,31 @@ public class Player extends Sprite {
 	private boolean moveLeft;
 	private boolean moveRight;
 	
+	// the world the player plays in
+	private final World world;
+	
 	private ArrayList<Sprite> playerInHole;
 	private ArrayList<Sprite> lives = new ArrayList<> ();
+	// icons are used again instead of creating new ones
+	private final SpritePool<Tile> lifeIcons = new SpritePool<>("life icon", () -> Tile.createLifeTile(0, 0));
+	private final SpritePool<Tile> holeIcons = new SpritePool<>("hole icon",
+			() -> new Tile(PLAYER_PATH, 0, 0, new Tag[] { Sprite.HAZARD }));
 	
     /** 
      * Initialize an object of class Player and set its configuration.
+     * @param world the world the player plays in.
      * @param x x position.
      * @param y y position.
      */
-	public Player(float x, float y) {
+	public Player(World world, float x, float y) {
 		super(PLAYER_PATH, x, y);
+		this.world = world;
+		world.getSpritePools().register(lifeIcons);
+		world.getSpritePools().register(holeIcons);
 		
 		// according number of lives, add corresponding lives remaining logo
-		for(int i = 0; i < World.getNumLives(); i++) {
-			lives.add(Tile.createLifeTile(LIFE_ICON_X + i * LIFE_ICON_INTERVAL_X, LIFE_ICON_Y));
+		for(int i = 0; i < world.getNumLives(); i++) {
+			lives.add(lifeIcons.acquire(LIFE_ICON_X + i * LIFE_ICON_INTERVAL_X, LIFE_ICON_Y, false));
 		}
 		
 		playerInHole = new ArrayList<Sprite> ();
@@ -59,6 +75,24 @@ public class Player extends Sprite {
 		downBound = new BoundingBox(x, y + getImageHeight(), getImageWidth(), getImageHeight());
 		leftBound = new BoundingBox(x - getImageWidth(), y, getImageWidth(), getImageHeight());
 		rightBound = new BoundingBox(x + getImageWidth(), y, getImageWidth(), getImageHeight());
+		broadBound = new BoundingBox(getBounds());
+		collisionBounds = new BoundingBox[] {getBounds(), upBound, downBound, leftBound, rightBound};
+	}
+	
+	/**
+	 * Take the player back to the start of a new level, it keeps its lives.
+	 */
+	void startLevel() {
+		reset(World.INITIAL_X_PLAYER, World.INITIAL_Y_PLAYER);
+		upSolidSprite = null;
+		downSolidSprite = null;
+		leftSolidSprite = null;
+		rightSolidSprite = null;
+		onRideableObject = null;
+		solidObject = null;
+		// the holes of the new level are empty
+		releaseHoleIcons();
+		updateBound();
 	}
 	
 	private void checkMoveable() {
@@ -91,11 +125,11 @@ public class Player extends Sprite {
 	
 	/**
 	 * respond the keyboard input
-	 * @param input A wrapped for all keyboard, mouse and controller input.
+	 * @param input the source of keyboard input.
 	 * @param delta Time passed since last frame (milliseconds).
 	 */
 	@Override
-	public void update(Input input, int delta) {
+	public void update(InputSource input, int delta) {
 		int dx = 0, dy = 0;
 		checkMoveable();
 		
@@ -183,13 +217,12 @@ public class Player extends Sprite {
 		} else {
 			// if the hole player arrived has already a player icon, lose a life or create a player icon in it 
 			for(int i = 0; i < World.HOLE_X_RANGE.length; i++) {
-				if (World.getHoleStatus(i) == false && getX() < World.HOLE_X_RANGE[i][1] 
+				if (world.getHoleStatus(i) == false && getX() < World.HOLE_X_RANGE[i][1] 
 						&& getX() > World.HOLE_X_RANGE[i][0]) {
-					World.arriveHole(i);
+					world.arriveHole(i);
 					setX(App.SCREEN_WIDTH / 2);
 					setY(App.SCREEN_HEIGHT - World.TILE_SIZE);
-					playerInHole.add(new Tile(PLAYER_PATH, (World.HOLE_X_RANGE[i][0] + World.HOLE_X_RANGE[i][1]) / 2,
-							World.HOLE_Y, new String[] { Sprite.HAZARD }));
+					playerInHole.add(createHoleIcon(i));
 					return;
 				}
 			}
@@ -197,6 +230,18 @@ public class Player extends Sprite {
 		}
 	}
 	
+	private Sprite createHoleIcon(int holeID) {
+		return holeIcons.acquire((World.HOLE_X_RANGE[holeID][0] + World.HOLE_X_RANGE[holeID][1]) / 2,
+				World.HOLE_Y, false);
+	}
+	
+	private void releaseHoleIcons() {
+		for (int i = 0; i < playerInHole.size(); i++) {
+			holeIcons.release(playerInHole.get(i));
+		}
+		playerInHole.clear();
+	}
+	
 	/**
 	 * judge whether it and its extra bounds contact other sprite 
 	 * @param other the selected sprite to detect whether it contacts player.
@@ -221,6 +266,29 @@ public class Player extends Sprite {
 		return super.collides(other);
 	}
 	
+	/**
+	 * Accesses the bound of the player and its four extra bounds, the sprites which intersect
+	 * none of them do not collide with the player.
+	 * @return	the five bounds, they move with the player.
+	 */
+	public BoundingBox[] getCollisionBounds() {
+		return collisionBounds;
+	}
+	
+	/**
+	 * Accesses the bound covering the player and its extra bounds.
+	 * @return	the bound used by the broad phase.
+	 */
+	@Override
+	public BoundingBox getBroadBounds() {
+		broadBound.set(getBounds());
+		broadBound.union(upBound);
+		broadBound.union(downBound);
+		broadBound.union(leftBound);
+		broadBound.union(rightBound);
+		return broadBound;
+	}
+	
 	/**
 	 * According to contacted sprite's tags, do corresponding response
 	 * @param other the sprite is contacted.
@@ -251,21 +319,87 @@ public class Player extends Sprite {
 		}
 	}
 	
+	@Override
+	public void writeState(ByteBuffer out) {
+		super.writeState(out);
+		out.putInt(indexOf(upSolidSprite));
+		out.putInt(indexOf(downSolidSprite));
+		out.putInt(indexOf(leftSolidSprite));
+		out.putInt(indexOf(rightSolidSprite));
+		out.putInt(indexOf(onRideableObject));
+		out.putInt(indexOf(solidObject));
+		out.putInt(lives.size());
+	}
+	
+	/**
+	 * Restore the state written by writeState, the hole status of the world has to be restored before.
+	 * @param in the buffer holding the state.
+	 * @param sprites the sprite list of the world, to find written sprites.
+	 */
+	@Override
+	public void readState(ByteBuffer in, ArrayList<Sprite> sprites) {
+		super.readState(in, sprites);
+		upSolidSprite = spriteAt(in.getInt(), sprites);
+		downSolidSprite = spriteAt(in.getInt(), sprites);
+		leftSolidSprite = spriteAt(in.getInt(), sprites);
+		rightSolidSprite = spriteAt(in.getInt(), sprites);
+		onRideableObject = (RideableObject)spriteAt(in.getInt(), sprites);
+		solidObject = (MovingObject)spriteAt(in.getInt(), sprites);
+		updateBound();
+		
+		// icons are only created again when they differ
+		int numLives = in.getInt();
+		while (lives.size() > numLives) {
+			lifeIcons.release(lives.remove(lives.size() - 1));
+		}
+		while (lives.size() < numLives) {
+			lives.add(lifeIcons.acquire(LIFE_ICON_X + lives.size() * LIFE_ICON_INTERVAL_X, LIFE_ICON_Y, false));
+		}
+		if (!holeIconsMatch()) {
+			releaseHoleIcons();
+			for (int i = 0; i < World.HOLE_X_RANGE.length; i++) {
+				if (world.getHoleStatus(i)) {
+					playerInHole.add(createHoleIcon(i));
+				}
+			}
+		}
+	}
+	
+	private boolean holeIconsMatch() {
+		int filled = 0;
+		for (int i = 0; i < World.HOLE_X_RANGE.length; i++) {
+			if (world.getHoleStatus(i)) {
+				filled++;
+			}
+		}
+		if (filled != playerInHole.size()) {
+			return false;
+		}
+		for (Sprite icon : playerInHole) {
+			for (int i = 0; i < World.HOLE_X_RANGE.length; i++) {
+				if (icon.getX() > World.HOLE_X_RANGE[i][0] && icon.getX() < World.HOLE_X_RANGE[i][1] 
+						&& !world.getHoleStatus(i)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
 	private void addOneLife() {
-		World.setNumLives(World.getNumLives() + 1);
-		lives.add(Tile.createLifeTile(LIFE_ICON_X + lives.size() * LIFE_ICON_INTERVAL_X, LIFE_ICON_Y));
+		world.setNumLives(world.getNumLives() + 1);
+		lives.add(lifeIcons.acquire(LIFE_ICON_X + lives.size() * LIFE_ICON_INTERVAL_X, LIFE_ICON_Y, false));
 	}
 		
 	private void loseOneLife() {
-		// lose one life and if the number of lives equals 0, game over.
-		World.setNumLives(World.getNumLives() - 1);
-		if(World.getNumLives() == 0) {
-			System.exit(0);
+		// lose one life and if the number of lives equals 0, the world ends the game.
+		world.setNumLives(world.getNumLives() - 1);
+		if(world.getNumLives() == 0) {
+			return;
 		}
 		
 		// remove lives remaining
-		lives.remove(lives.size() - 1);
-		lives.trimToSize();
+		lifeIcons.release(lives.remove(lives.size() - 1));
 		
 		// reset player position
 		setX(World.INITIAL_X_PLAYER);
@@ -274,19 +408,21 @@ public class Player extends Sprite {
 
 	/**
 	 * Render the player, lives remaining, players in the holes
+	 * @param alpha how far the frame is between the previous and the current update, from 0 to 1.
+	 * @param stats the render statistics of the world, counting the draw calls.
 	 */
 	@Override
-	public void render() {
-		super.render();
+	public void render(float alpha, RenderStats stats) {
+		super.render(alpha, stats);
 		
 		// render lives
-		for (Sprite temp : lives) {
-			temp.render();
+		for (int i = 0; i < lives.size(); i++) {
+			lives.get(i).render(alpha, stats);
 		}
 		
 		// render players in the holes
-		for (Sprite temp : playerInHole) {
-			temp.render();
+		for (int i = 0; i < playerInHole.size(); i++) {
+			playerInHole.get(i).render(alpha, stats);
 		}
 	}
 	
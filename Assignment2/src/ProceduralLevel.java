@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates an endless sequence of levels from a seed, lane by lane.
+ * Every level has the layout of the shipped levels: two rows of trees with the holes,
+ * water lanes with logs or turtles, a grass row, road lanes with vehicles and a grass row.
+ * The lanes are numbered from the first level on and every lane is generated from the seed
+ * and its number alone, so the generator keeps no state: the lanes of a level are streamed in
+ * while the previous level is played and the lanes of the previous level, which have left the view,
+ * are dropped when it ends. The memory used stays the same however many levels are played.
+ */
+public class ProceduralLevel implements LevelSource {
+	private static final int COLUMNS = (App.SCREEN_WIDTH + World.TILE_SIZE - 1) / World.TILE_SIZE;
+	private static final int FULL_TREE_ROW = 0;
+	private static final int HOLE_TREE_ROW = 1;
+	private static final int FIRST_WATER_ROW = 2;
+	private static final int NUM_WATER_LANES = 6;
+	private static final int FIRST_GRASS_ROW = FIRST_WATER_ROW + NUM_WATER_LANES;
+	private static final int FIRST_ROAD_ROW = FIRST_GRASS_ROW + 1;
+	private static final int NUM_ROAD_LANES = 5;
+	private static final int LAST_GRASS_ROW = FIRST_ROAD_ROW + NUM_ROAD_LANES;
+	/** the number of lanes of every level */
+	public static final int LANES_PER_LEVEL = NUM_WATER_LANES + NUM_ROAD_LANES;
+	// mixes the seed with the number of a lane
+	private static final long LANE_MIX = 0x9E3779B97F4A7C15L;
+
+	// types of level file entries, and how many of them fit in a lane
+	private static final String[] WATER_TYPES = {"log", "longLog", "turtle"};
+	private static final int[] WATER_COUNTS = {3, 2, 3};
+	private static final String[] ROAD_TYPES = {"bus", "bulldozer", "racecar", "bike"};
+	private static final int[] ROAD_COUNTS = {4, 5, 2, 3};
+	// the extra life appears on logs, so the first water lane of a level never has turtles
+	private static final int NUM_LOG_TYPES = 2;
+
+	private final long seed;
+
+	/**
+	 * Initialize an object of class ProceduralLevel and set its configuration.
+	 * @param seed the seed of every lane, the same seed generates the same levels.
+	 */
+	public ProceduralLevel(long seed) {
+		this.seed = seed;
+	}
+
+	@Override
+	public boolean hasLevel(int level) {
+		return level >= 1;
+	}
+
+	@Override
+	public ArrayList<Sprite> createLevel(int level, SpritePools pools) {
+		ArrayList<Sprite> levelSprites = new ArrayList<>();
+		// tiles first, they are baked into the background
+		for (int col = 0; col < COLUMNS; col++) {
+			addTile(levelSprites, pools, "tree", col, FULL_TREE_ROW);
+			// gaps in the second row of trees are the holes
+			if (col % 4 < 2) {
+				addTile(levelSprites, pools, "tree", col, HOLE_TREE_ROW);
+			}
+		}
+		for (int row = FIRST_WATER_ROW; row < FIRST_GRASS_ROW; row++) {
+			for (int col = 0; col < COLUMNS; col++) {
+				addTile(levelSprites, pools, "water", col, row);
+			}
+		}
+		for (int col = 0; col < COLUMNS; col++) {
+			addTile(levelSprites, pools, "grass", col, FIRST_GRASS_ROW);
+			addTile(levelSprites, pools, "grass", col, LAST_GRASS_ROW);
+		}
+
+		long firstLane = (long)(level - 1) * LANES_PER_LEVEL;
+		for (int i = 0; i < NUM_WATER_LANES; i++) {
+			int numTypes = i == 0 ? NUM_LOG_TYPES : WATER_TYPES.length;
+			addLane(levelSprites, pools, firstLane + i, FIRST_WATER_ROW + i, WATER_TYPES, WATER_COUNTS, numTypes);
+		}
+		for (int i = 0; i < NUM_ROAD_LANES; i++) {
+			addLane(levelSprites, pools, firstLane + NUM_WATER_LANES + i, FIRST_ROAD_ROW + i,
+					ROAD_TYPES, ROAD_COUNTS, ROAD_TYPES.length);
+		}
+		return levelSprites;
+	}
+
+	private static void addTile(ArrayList<Sprite> levelSprites, SpritePools pools, String type, int col, int row) {
+		levelSprites.add(World.createSprite(type, col * World.TILE_SIZE, row * World.TILE_SIZE, false, pools));
+	}
+
+	private void addLane(ArrayList<Sprite> levelSprites, SpritePools pools, long lane, int row, String[] types, int[] counts, int numTypes) {
+		Random random = new Random(seed ^ lane * LANE_MIX);
+		int type = random.nextInt(numTypes);
+		boolean moveRight = random.nextBoolean();
+		// objects of a lane are evenly spaced, from a random offset
+		float spacing = (float)App.SCREEN_WIDTH / counts[type];
+		float offset = random.nextFloat() * spacing;
+		for (int i = 0; i < counts[type]; i++) {
+			levelSprites.add(World.createSprite(types[type], offset + i * spacing, row * World.TILE_SIZE, moveRight, pools));
+		}
+	}
+}
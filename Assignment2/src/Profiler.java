@@ -0,0 +1,232 @@
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Measures where the time of a world goes, tick by tick and frame by frame.
+ * Every phase has a Histogram of its durations in nanoseconds. The profiler also counts the
+ * pairs of sprites tested and colliding in the last tick and, when enabled, the bytes the tick allocated.
+ * Recording never allocates, so it can stay on in production.
+ */
+public class Profiler implements ProfilerMXBean {
+	/**
+	 * The measured phases.
+	 */
+	public enum Phase {
+		/** running timed events and updating every sprite */
+		UPDATE,
+		/** the broad and narrow phase of collision detection */
+		COLLISION,
+		/** checking whether all holes are filled, it includes loading the next level */
+		UPGRADE,
+		/** rendering a frame */
+		RENDER,
+		/** reading a level file and creating its sprites */
+		LOAD_LEVEL
+	}
+	
+	private static final Phase[] PHASES = Phase.values();
+	private static final double[] CSV_PERCENTILES = {50, 99};
+	
+	private final Histogram[] histograms = new Histogram[PHASES.length];
+	private long ticks;
+	private int collisionTests;
+	private int collisionPairs;
+	
+	// allocations are only measured when enabled, reading the counter takes about as long as a tick
+	private boolean trackAllocations;
+	private com.sun.management.ThreadMXBean threads;
+	private long tickStartBytes;
+	// bytes allocated by reading the counter itself
+	private long counterBytes;
+	private long allocatedBytes;
+	
+	/**
+	 * Initialize an object of class Profiler and set its configuration.
+	 */
+	public Profiler() {
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new Histogram();
+		}
+	}
+	
+	/**
+	 * Record the duration of a phase.
+	 * @param phase the measured phase.
+	 * @param nanos the duration, in nanoseconds.
+	 */
+	public void record(Phase phase, long nanos) {
+		histograms[phase.ordinal()].record(nanos);
+	}
+	
+	/**
+	 * Accesses the durations of a phase.
+	 * @param phase the measured phase.
+	 * @return the histogram of the durations, in nanoseconds.
+	 */
+	public Histogram getHistogram(Phase phase) {
+		return histograms[phase.ordinal()];
+	}
+	
+	/**
+	 * Start measuring a tick.
+	 */
+	public void beginTick() {
+		if (trackAllocations) {
+			tickStartBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+	}
+	
+	/**
+	 * Finish measuring a tick.
+	 * @param tests the number of pairs tested by the narrow phase.
+	 * @param pairs the number of colliding pairs.
+	 */
+	public void endTick(int tests, int pairs) {
+		ticks++;
+		collisionTests = tests;
+		collisionPairs = pairs;
+		if (trackAllocations) {
+			long bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			allocatedBytes = Math.max(0, bytes - tickStartBytes - counterBytes);
+		}
+	}
+	
+	/**
+	 * Sets whether the bytes allocated by every tick are measured.
+	 * @param trackAllocations true to measure allocations.
+	 */
+	public void setTrackAllocations(boolean trackAllocations) {
+		if (trackAllocations && threads == null) {
+			threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+			threads.setThreadAllocatedMemoryEnabled(true);
+			// the counter may allocate a little itself, it is not counted against the tick
+			long id = Thread.currentThread().getId();
+			long first = threads.getThreadAllocatedBytes(id);
+			counterBytes = threads.getThreadAllocatedBytes(id) - first;
+		}
+		this.trackAllocations = trackAllocations;
+		allocatedBytes = 0;
+	}
+	
+	/**
+	 * detect whether the bytes allocated by every tick are measured.
+	 * @return true when allocations are measured.
+	 */
+	public boolean isTrackingAllocations() {
+		return trackAllocations;
+	}
+	
+	@Override
+	public long getTicks() {
+		return ticks;
+	}
+	
+	@Override
+	public double getUpdateMeanNanos() {
+		return getHistogram(Phase.UPDATE).getMean();
+	}
+	
+	@Override
+	public long getUpdateP99Nanos() {
+		return getHistogram(Phase.UPDATE).getValueAtPercentile(99);
+	}
+	
+	@Override
+	public double getCollisionMeanNanos() {
+		return getHistogram(Phase.COLLISION).getMean();
+	}
+	
+	@Override
+	public long getCollisionP99Nanos() {
+		return getHistogram(Phase.COLLISION).getValueAtPercentile(99);
+	}
+	
+	@Override
+	public double getRenderMeanNanos() {
+		return getHistogram(Phase.RENDER).getMean();
+	}
+	
+	@Override
+	public long getRenderP99Nanos() {
+		return getHistogram(Phase.RENDER).getValueAtPercentile(99);
+	}
+	
+	@Override
+	public long getLoadLevelMaxNanos() {
+		return getHistogram(Phase.LOAD_LEVEL).getMax();
+	}
+	
+	@Override
+	public int getCollisionTests() {
+		return collisionTests;
+	}
+	
+	@Override
+	public int getCollisionPairs() {
+		return collisionPairs;
+	}
+	
+	@Override
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+	
+	@Override
+	public void reset() {
+		for (Histogram histogram : histograms) {
+			histogram.reset();
+		}
+		ticks = 0;
+		collisionTests = 0;
+		collisionPairs = 0;
+		allocatedBytes = 0;
+	}
+	
+	/**
+	 * Publish the profiler as an MBean of the platform MBean server.
+	 * @param name the name of the MBean, e.g. "ShadowLeap:type=Profiler".
+	 */
+	public void register(String name) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Write the names of the columns written by writeCsvRow.
+	 * @param out the receiving writer.
+	 */
+	public static void writeCsvHeader(PrintWriter out) {
+		out.print("ticks");
+		for (Phase phase : PHASES) {
+			String name = phase.name().toLowerCase();
+			out.print("," + name + "_count," + name + "_mean_ns");
+			for (double percentile : CSV_PERCENTILES) {
+				out.print("," + name + "_p" + (int)percentile + "_ns");
+			}
+			out.print("," + name + "_max_ns");
+		}
+		out.println(",collision_tests,collision_pairs,allocated_bytes");
+	}
+	
+	/**
+	 * Write the current metrics as a row of comma separated values.
+	 * @param out the receiving writer.
+	 */
+	public void writeCsvRow(PrintWriter out) {
+		out.print(ticks);
+		for (Histogram histogram : histograms) {
+			out.print("," + histogram.getCount() + "," + Math.round(histogram.getMean()));
+			for (double percentile : CSV_PERCENTILES) {
+				out.print("," + histogram.getValueAtPercentile(percentile));
+			}
+			out.print("," + histogram.getMax());
+		}
+		out.println("," + collisionTests + "," + collisionPairs + "," + allocatedBytes);
+	}
+}
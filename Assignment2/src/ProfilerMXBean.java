@@ -0,0 +1,76 @@
+/**
+ * The metrics of a Profiler published through JMX, e.g. to watch frame budgets with jconsole.
+ * Durations are in nanoseconds.
+ */
+public interface ProfilerMXBean {
+	/**
+	 * Accesses the number of recorded ticks.
+	 * @return the number of ticks.
+	 */
+	long getTicks();
+	
+	/**
+	 * Accesses the mean time of updating sprites in a tick.
+	 * @return the mean time, in nanoseconds.
+	 */
+	double getUpdateMeanNanos();
+	
+	/**
+	 * Accesses the 99th percentile of the time of updating sprites in a tick.
+	 * @return the time, in nanoseconds.
+	 */
+	long getUpdateP99Nanos();
+	
+	/**
+	 * Accesses the mean time of detecting collisions in a tick.
+	 * @return the mean time, in nanoseconds.
+	 */
+	double getCollisionMeanNanos();
+	
+	/**
+	 * Accesses the 99th percentile of the time of detecting collisions in a tick.
+	 * @return the time, in nanoseconds.
+	 */
+	long getCollisionP99Nanos();
+	
+	/**
+	 * Accesses the mean time of rendering a frame.
+	 * @return the mean time, in nanoseconds.
+	 */
+	double getRenderMeanNanos();
+	
+	/**
+	 * Accesses the 99th percentile of the time of rendering a frame.
+	 * @return the time, in nanoseconds.
+	 */
+	long getRenderP99Nanos();
+	
+	/**
+	 * Accesses the longest time of loading a level.
+	 * @return the time, in nanoseconds.
+	 */
+	long getLoadLevelMaxNanos();
+	
+	/**
+	 * Accesses the number of pairs tested by the narrow phase in the last tick.
+	 * @return the number of pairs.
+	 */
+	int getCollisionTests();
+	
+	/**
+	 * Accesses the number of colliding pairs in the last tick.
+	 * @return the number of pairs.
+	 */
+	int getCollisionPairs();
+	
+	/**
+	 * Accesses the bytes allocated by the last tick, when allocations are tracked.
+	 * @return the number of bytes, 0 when allocations are not tracked.
+	 */
+	long getAllocatedBytes();
+	
+	/**
+	 * Forget every recorded time and count, as if the profiler was new.
+	 */
+	void reset();
+}
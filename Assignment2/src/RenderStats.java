@@ -0,0 +1,96 @@
+/**
+ * Counts draw calls, sprites drawn and skipped, and measures render time, frame by frame.
+ * Every world has its own, next to its Profiler.
+ */
+public class RenderStats {
+	private int drawCalls;
+	private int drawn;
+	private int culled;
+	private int hidden;
+	private int lastDrawCalls;
+	private int lastDrawn;
+	private int lastCulled;
+	private int lastHidden;
+	private long lastRenderNanos;
+	
+	/**
+	 * Start counting a new frame.
+	 */
+	public void beginFrame() {
+		drawCalls = 0;
+		drawn = 0;
+		culled = 0;
+		hidden = 0;
+	}
+	
+	/**
+	 * Count one draw call in the current frame.
+	 */
+	public void countDraw() {
+		drawCalls++;
+	}
+	
+	/**
+	 * Count the sprites of the current frame.
+	 * @param drawnSprites the number of sprites drawn.
+	 * @param culledSprites the number of sprites skipped because they are off the screen.
+	 * @param hiddenSprites the number of sprites skipped because they are hidden.
+	 */
+	public void countSprites(int drawnSprites, int culledSprites, int hiddenSprites) {
+		drawn += drawnSprites;
+		culled += culledSprites;
+		hidden += hiddenSprites;
+	}
+	
+	/**
+	 * Finish the current frame.
+	 * @param renderNanos the time spent rendering the frame, in nanoseconds.
+	 */
+	public void endFrame(long renderNanos) {
+		lastDrawCalls = drawCalls;
+		lastDrawn = drawn;
+		lastCulled = culled;
+		lastHidden = hidden;
+		lastRenderNanos = renderNanos;
+	}
+	
+	/**
+	 * Accesses the number of draw calls of the last frame.
+	 * @return the number of draw calls.
+	 */
+	public int getDrawCalls() {
+		return lastDrawCalls;
+	}
+	
+	/**
+	 * Accesses the number of sprites drawn in the last frame, tiles baked into the background are not counted.
+	 * @return the number of sprites drawn.
+	 */
+	public int getDrawn() {
+		return lastDrawn;
+	}
+	
+	/**
+	 * Accesses the number of sprites skipped in the last frame because they were off the screen.
+	 * @return the number of culled sprites.
+	 */
+	public int getCulled() {
+		return lastCulled;
+	}
+	
+	/**
+	 * Accesses the number of sprites skipped in the last frame because they were hidden.
+	 * @return the number of hidden sprites.
+	 */
+	public int getHidden() {
+		return lastHidden;
+	}
+	
+	/**
+	 * Accesses the render time of the last frame.
+	 * @return the render time, in nanoseconds.
+	 */
+	public long getRenderNanos() {
+		return lastRenderNanos;
+	}
+}
@@ -0,0 +1,103 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A session recorded by ReplayRecorder, read through a memory-mapped buffer.
+ * Playing it in a world created with the recorded seed reproduces the session exactly,
+ * as fast as the world can be updated.
+ */
+public class Replay {
+	private final long seed;
+	private final int tickMillis;
+	private final MappedByteBuffer ticks;
+	private final int firstTick;
+	private final int numTicks;
+	
+	/**
+     * Initialize an object of class Replay and read the header of a replay file.
+     * @param replayPath the path of the replay file.
+     * @throws IOException if the file cannot be read or is not a replay.
+     */
+	public Replay(String replayPath) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(replayPath), StandardOpenOption.READ)) {
+			ticks = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (ticks.remaining() < ReplayRecorder.HEADER_SIZE || ticks.getInt() != ReplayRecorder.MAGIC || ticks.getInt() != ReplayRecorder.VERSION) {
+			throw new IOException("Not a replay: " + replayPath);
+		}
+		seed = ticks.getLong();
+		tickMillis = ticks.getInt();
+		firstTick = ticks.position();
+		numTicks = ticks.remaining();
+	}
+	
+	/**
+	 * Accesses the seed of the recorded world.
+	 * @return the seed.
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/**
+	 * Accesses the length of a recorded tick.
+	 * @return the length of a tick, in milliseconds.
+	 */
+	public int getTickMillis() {
+		return tickMillis;
+	}
+	
+	/**
+	 * Accesses the number of recorded ticks.
+	 * @return the number of ticks.
+	 */
+	public int getNumTicks() {
+		return numTicks;
+	}
+	
+	/**
+	 * Accesses the keys pressed in a tick.
+	 * @param tick the index of the tick.
+	 * @return a combination of KeyMaskInput.LEFT, RIGHT, UP and DOWN.
+	 */
+	public int getMask(int tick) {
+		return ticks.get(firstTick + tick);
+	}
+	
+	/**
+	 * Play the replay in a new world created with the recorded seed.
+	 * @return the world at the end of the replay.
+	 */
+	public World play() {
+		World world = new World(seed);
+		KeyMaskInput input = new KeyMaskInput();
+		for (int i = 0; i < numTicks && world.getOutcome() == Outcome.RUNNING; i++) {
+			input.setMask(getMask(i));
+			world.update(input, tickMillis);
+		}
+		return world;
+	}
+	
+	/** Start-up method. Plays replays without a display and prints how they end.
+	 * Run it from the Assignment2 directory so the assets can be found.
+	 * @param args Command-line arguments, the replay files to play.
+	 * @throws IOException if a file cannot be read.
+	 */
+	public static void main(String[] args) throws IOException {
+		AssetCache.setHeadless(true);
+		for (String replayPath : args) {
+			Replay replay = new Replay(replayPath);
+			long start = System.nanoTime();
+			World world = replay.play();
+			long elapsed = System.nanoTime() - start;
+			
+			double recordedSeconds = (double)replay.getNumTicks() * replay.getTickMillis() / 1000;
+			System.out.printf("%s: %s, score %d, level %d, lives %d, %d ticks in %.3f s, %.0fx real time%n",
+					replayPath, world.getOutcome(), world.getScore(), world.getLevel(), world.getNumLives(),
+					replay.getNumTicks(), elapsed / 1e9, recordedSeconds * 1e9 / elapsed);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records a session into a replay file, so it can be played again by Replay.
+ * The file is a header and the keys pressed in every tick:
+ * <pre>
+ * int magic, int version, long seed of the world, int length of a tick in milliseconds
+ * for every tick: byte key mask of KeyMaskInput
+ * </pre>
+ * Ticks are collected in a direct buffer and written to the file when it is full,
+ * so recording a tick is a single store in memory.
+ */
+public class ReplayRecorder implements Closeable {
+	/** extension of replay files */
+	public static final String EXTENSION = ".rpl";
+	
+	static final int MAGIC = 0x534C5250;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 20;
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private long numTicks;
+	
+	/**
+     * Initialize an object of class ReplayRecorder and write the header of the replay.
+     * @param replayPath the path of the written replay file, an existing file is replaced.
+     * @param seed the seed of the recorded world.
+     * @param tickMillis length of a tick, in milliseconds.
+     * @throws IOException if the file cannot be written.
+     */
+	public ReplayRecorder(String replayPath, long seed, int tickMillis) throws IOException {
+		channel = FileChannel.open(Paths.get(replayPath), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putLong(seed);
+		buffer.putInt(tickMillis);
+	}
+	
+	/**
+	 * Record the keys pressed in a tick.
+	 * @param mask a combination of KeyMaskInput.LEFT, RIGHT, UP and DOWN.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void record(int mask) throws IOException {
+		if (!buffer.hasRemaining()) {
+			flush();
+		}
+		buffer.put((byte)mask);
+		numTicks++;
+	}
+	
+	/**
+	 * Accesses the number of recorded ticks.
+	 * @return the number of ticks.
+	 */
+	public long getNumTicks() {
+		return numTicks;
+	}
+	
+	/**
+	 * Write the recorded ticks to the file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	/**
+	 * Write the recorded ticks and close the file.
+	 * @throws IOException if the file cannot be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel.isOpen()) {
+			flush();
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,330 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import utilities.BoundingBox;
+
+/**
+ * Indexes sprites by row for the queries of the player.
+ * Every sprite of a level sits on a row of World.TILE_SIZE and moving objects only move in x,
+ * so every row keeps its sprites sorted by the left of their bound. A query only visits the
+ * rows the box can reach and binary searches them, instead of scanning all sprites.
+ * Tiles are sorted once when the level is loaded, other sprites are sorted again every frame,
+ * which is nearly linear because their order barely changes between frames.
+ * The bounds of every row are packed in arrays, so the boxes of a query are tested against
+ * a whole row at once and only the sprites they intersect are returned.
+ */
+public class RowIndex {
+	private static final int ROW_SIZE = World.TILE_SIZE;
+	// room for sprites changing rows while playing, such as the extra life
+	private static final int ROW_SLACK = 1;
+	
+	private final ArrayList<Sprite> sprites;
+	private final int numRows;
+	// how many rows away from its centre a sprite can reach
+	private int rowMargin;
+	
+	private final Row[] staticRows;
+	private final Row[] dynamicRows;
+	// indices of sprites which are sorted again every frame, and the row of each sprite
+	private int[] dynamic;
+	private int numDynamic;
+	private int[] rowOf;
+	// the box of a query with a single box
+	private final BoundingBox[] single = new BoundingBox[1];
+	
+	/**
+	 * Sprites of one row, sorted by the left of their bound, with their bounds.
+	 */
+	private static class Row {
+		int[] indices = new int[0];
+		float[] lefts = new float[0];
+		float[] tops = new float[0];
+		float[] rights = new float[0];
+		float[] bottoms = new float[0];
+		float[] apart = new float[0];
+		// one bit per sprite, the sprites a query hits
+		long[] hits = new long[0];
+		long[] boxHits = new long[0];
+		int size;
+		float maxWidth;
+		float top = Float.MAX_VALUE;
+		float bottom = -Float.MAX_VALUE;
+		
+		void add(int index) {
+			if (size == indices.length) {
+				reserve(Math.max(4, size * 2));
+			}
+			indices[size++] = index;
+		}
+		
+		void reserve(int capacity) {
+			if (capacity > indices.length) {
+				indices = Arrays.copyOf(indices, capacity);
+				lefts = Arrays.copyOf(lefts, capacity);
+				tops = Arrays.copyOf(tops, capacity);
+				rights = Arrays.copyOf(rights, capacity);
+				bottoms = Arrays.copyOf(bottoms, capacity);
+				apart = new float[capacity];
+				hits = new long[(capacity + 63) / 64];
+				boxHits = new long[hits.length];
+			}
+		}
+		
+		void remove(int index) {
+			for (int k = 0; k < size; k++) {
+				if (indices[k] == index) {
+					System.arraycopy(indices, k + 1, indices, k, size - k - 1);
+					size--;
+					return;
+				}
+			}
+		}
+		
+		// the sprites after a despawned one moved down by one in the sprite list
+		void renumber(int removed) {
+			for (int k = 0; k < size; k++) {
+				if (indices[k] > removed) {
+					indices[k]--;
+				}
+			}
+		}
+		
+		// reads the bounds of the sprites again and restores the order by insertion sort
+		void refresh(ArrayList<Sprite> sprites) {
+			maxWidth = 0;
+			top = Float.MAX_VALUE;
+			bottom = -Float.MAX_VALUE;
+			for (int k = 0; k < size; k++) {
+				BoundingBox box = sprites.get(indices[k]).getBounds();
+				lefts[k] = box.getLeft();
+				tops[k] = box.getTop();
+				rights[k] = box.getRight();
+				bottoms[k] = box.getBottom();
+				maxWidth = Math.max(maxWidth, box.getWidth());
+				top = Math.min(top, box.getTop());
+				bottom = Math.max(bottom, box.getBottom());
+			}
+			for (int k = 1; k < size; k++) {
+				float left = lefts[k];
+				float boxTop = tops[k];
+				float right = rights[k];
+				float boxBottom = bottoms[k];
+				int index = indices[k];
+				int m = k - 1;
+				while (m >= 0 && lefts[m] > left) {
+					lefts[m + 1] = lefts[m];
+					tops[m + 1] = tops[m];
+					rights[m + 1] = rights[m];
+					bottoms[m + 1] = bottoms[m];
+					indices[m + 1] = indices[m];
+					m--;
+				}
+				lefts[m + 1] = left;
+				tops[m + 1] = boxTop;
+				rights[m + 1] = right;
+				bottoms[m + 1] = boxBottom;
+				indices[m + 1] = index;
+			}
+		}
+		
+		int query(BoundingBox[] boxes, BoundingBox reach, int after, int[] out, int count) {
+			if (size == 0 || top > reach.getBottom() || bottom < reach.getTop()) {
+				return count;
+			}
+			// the sprites whose bound may reach the box, with a pixel to spare for rounding
+			int low = firstLeftAbove(reach.getLeft() - maxWidth - 1, false);
+			int high = firstLeftAbove(reach.getRight(), true);
+			int num = high - low;
+			if (num <= 0) {
+				return count;
+			}
+			int words = (num + 63) / 64;
+			boxes[0].intersects(lefts, tops, rights, bottoms, low, num, apart, hits);
+			for (int b = 1; b < boxes.length; b++) {
+				boxes[b].intersects(lefts, tops, rights, bottoms, low, num, apart, boxHits);
+				for (int w = 0; w < words; w++) {
+					hits[w] |= boxHits[w];
+				}
+			}
+			// in the order of the row, every bit is a sprite hit by one of the boxes
+			for (int w = 0; w < words; w++) {
+				long bits = hits[w];
+				while (bits != 0) {
+					int k = low + w * 64 + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					if (indices[k] > after) {
+						out[count++] = indices[k];
+					}
+				}
+			}
+			return count;
+		}
+		
+		// the first sprite whose left is above x, or not below x when inclusive is false
+		private int firstLeftAbove(float x, boolean inclusive) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (lefts[mid] < x || inclusive && lefts[mid] == x) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			return low;
+		}
+	}
+	
+	/**
+     * Initialize an object of class RowIndex and index every sprite except the player.
+     * @param sprites all sprites of the world, the order of the list is kept by queries.
+     */
+	public RowIndex(ArrayList<Sprite> sprites) {
+		this.sprites = sprites;
+		numRows = App.SCREEN_HEIGHT / ROW_SIZE + 1;
+		staticRows = new Row[numRows];
+		dynamicRows = new Row[numRows];
+		for (int r = 0; r < numRows; r++) {
+			staticRows[r] = new Row();
+			dynamicRows[r] = new Row();
+		}
+		dynamic = new int[sprites.size()];
+		rowOf = new int[sprites.size()];
+		
+		float maxHalfHeight = 0;
+		for (int i = 0; i < sprites.size(); i++) {
+			Sprite sprite = sprites.get(i);
+			if (sprite instanceof Player) {
+				continue;
+			}
+			maxHalfHeight = Math.max(maxHalfHeight, sprite.getBounds().getHeight() / 2);
+			rowOf[i] = row(sprite.getY());
+			if (sprite instanceof Tile) {
+				staticRows[rowOf[i]].add(i);
+			} else {
+				dynamic[numDynamic++] = i;
+				dynamicRows[rowOf[i]].add(i);
+			}
+		}
+		rowMargin = (int)Math.ceil(maxHalfHeight / ROW_SIZE);
+		for (Row row : staticRows) {
+			row.refresh(sprites);
+		}
+		for (Row row : dynamicRows) {
+			row.reserve(row.size + ROW_SLACK);
+		}
+		refresh();
+	}
+	
+	/**
+	 * Move sprites which changed row and sort every row of moving sprites again.
+	 */
+	public void refresh() {
+		for (int k = 0; k < numDynamic; k++) {
+			int index = dynamic[k];
+			int row = row(sprites.get(index).getY());
+			if (row != rowOf[index]) {
+				dynamicRows[rowOf[index]].remove(index);
+				dynamicRows[row].add(index);
+				rowOf[index] = row;
+			}
+		}
+		for (Row row : dynamicRows) {
+			row.refresh(sprites);
+		}
+	}
+	
+	/**
+	 * Add a sprite spawned after every other sprite.
+	 * @param index the index of the sprite, the last of the sprite list.
+	 */
+	public void add(int index) {
+		if (index >= rowOf.length) {
+			// doubled, so a steady stream of spawns stops growing the arrays
+			int capacity = Math.max(index + 1, 2 * rowOf.length);
+			dynamic = Arrays.copyOf(dynamic, capacity);
+			rowOf = Arrays.copyOf(rowOf, capacity);
+		}
+		Sprite sprite = sprites.get(index);
+		rowMargin = Math.max(rowMargin, (int)Math.ceil(sprite.getBounds().getHeight() / 2 / ROW_SIZE));
+		rowOf[index] = row(sprite.getY());
+		if (sprite instanceof Tile) {
+			staticRows[rowOf[index]].add(index);
+			staticRows[rowOf[index]].refresh(sprites);
+		} else {
+			dynamic[numDynamic++] = index;
+			dynamicRows[rowOf[index]].add(index);
+		}
+	}
+	
+	/**
+	 * Remove a despawned sprite, the sprites after it have already moved down by one in the sprite list.
+	 * @param index the index the sprite had in the sprite list.
+	 */
+	public void remove(int index) {
+		int slot = 0;
+		while (slot < numDynamic && dynamic[slot] != index) {
+			slot++;
+		}
+		boolean isStatic = slot == numDynamic;
+		Row row = isStatic ? staticRows[rowOf[index]] : dynamicRows[rowOf[index]];
+		row.remove(index);
+		if (!isStatic) {
+			dynamic[slot] = dynamic[--numDynamic];
+		}
+		System.arraycopy(rowOf, index + 1, rowOf, index, sprites.size() - index);
+		for (int k = 0; k < numDynamic; k++) {
+			if (dynamic[k] > index) {
+				dynamic[k]--;
+			}
+		}
+		for (int r = 0; r < numRows; r++) {
+			staticRows[r].renumber(index);
+			dynamicRows[r].renumber(index);
+		}
+		// rows of moving sprites read their bounds again every frame, a row of tiles only now
+		if (isStatic) {
+			row.refresh(sprites);
+		}
+	}
+	
+	/**
+	 * Find the sprites whose bound intersects the box.
+	 * @param box the box to query.
+	 * @param after only sprites whose index is greater than it are returned.
+	 * @param out receives the indices of candidates in ascending order, its length must be
+	 * at least the number of sprites.
+	 * @return the number of candidates.
+	 */
+	public int query(BoundingBox box, int after, int[] out) {
+		single[0] = box;
+		return query(single, box, after, out);
+	}
+	
+	/**
+	 * Find the sprites whose bound intersects any of the boxes, such as the bounds of the player.
+	 * @param boxes the boxes to query.
+	 * @param reach a box covering all boxes.
+	 * @param after only sprites whose index is greater than it are returned.
+	 * @param out receives the indices of sprites in ascending order, its length must be
+	 * at least the number of sprites.
+	 * @return the number of sprites found.
+	 */
+	public int query(BoundingBox[] boxes, BoundingBox reach, int after, int[] out) {
+		int count = 0;
+		int lastRow = Math.min(numRows - 1, row(reach.getBottom()) + rowMargin);
+		for (int r = Math.max(0, row(reach.getTop()) - rowMargin); r <= lastRow; r++) {
+			count = staticRows[r].query(boxes, reach, after, out, count);
+			count = dynamicRows[r].query(boxes, reach, after, out, count);
+		}
+		// keep the order of the sprite list, onCollision depends on it
+		Arrays.sort(out, 0, count);
+		return count;
+	}
+	
+	// the row of a centre, sprites outside the screen are clamped into the border rows
+	private int row(float y) {
+		return Math.max(0, Math.min(numRows - 1, Math.round(y / ROW_SIZE)));
+	}
+}
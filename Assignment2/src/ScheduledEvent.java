@@ -0,0 +1,54 @@
+/**
+ * Represents an event run by a Scheduler, once or periodically.
+ * An event can be cancelled and scheduled again, so sprites can keep their events
+ * instead of creating new ones every time.
+ */
+public class ScheduledEvent {
+	private final Runnable action;
+	// time of the next run on the game clock, in milliseconds
+	long deadline;
+	// period of a periodic event, 0 for a one-shot event
+	long period;
+	// order of scheduling, breaks ties between events with the same deadline
+	long sequence;
+	// position in the heap of the scheduler, -1 when it is not pending
+	int heapIndex = -1;
+	private final Scheduler scheduler;
+	
+	/** 
+     * Initialize an object of class ScheduledEvent and set its configuration.
+     * @param scheduler the scheduler running the event.
+     * @param action the action of the event.
+     */
+	ScheduledEvent(Scheduler scheduler, Runnable action) {
+		this.scheduler = scheduler;
+		this.action = action;
+	}
+	
+	/**
+	 * Cancel the event if it is pending.
+	 */
+	public void cancel() {
+		scheduler.cancel(this);
+	}
+	
+	/**
+	 * detect whether the event will run.
+	 * @return true when the event is scheduled and has not run or been cancelled.
+	 */
+	public boolean isPending() {
+		return heapIndex >= 0;
+	}
+	
+	/**
+	 * Accesses the time of the next run.
+	 * @return the time of the next run on the game clock, in milliseconds.
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+	
+	void run() {
+		action.run();
+	}
+}
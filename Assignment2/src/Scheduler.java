@@ -0,0 +1,244 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Runs events of sprites on the game clock instead of timer threads.
+ * The clock only moves when the world advances it by the time of a frame, on the update thread,
+ * so events are deterministic and pause or fast-forward together with the game.
+ */
+public class Scheduler {
+	private static final int INITIAL_CAPACITY = 16;
+	/** the size of the state of an event in a snapshot, in bytes: pending, deadline, period and sequence */
+	static final int EVENT_STATE_SIZE = Byte.BYTES + Long.BYTES + Long.BYTES + Long.BYTES;
+	/** the size of the state of the scheduler without its events, in bytes: time, next sequence and number of events */
+	static final int STATE_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+	
+	// pending events, a binary heap ordered by deadline and then by sequence
+	private ScheduledEvent[] heap = new ScheduledEvent[INITIAL_CAPACITY];
+	private int size;
+	private long time;
+	private long nextSequence;
+	// every event created by the scheduler, in order of creation
+	private final ArrayList<ScheduledEvent> events = new ArrayList<>();
+	
+	/**
+	 * Accesses the time of the game clock.
+	 * @return milliseconds passed on the game clock.
+	 */
+	public long getTime() {
+		return time;
+	}
+	
+	/**
+	 * Create an event which is not scheduled yet.
+	 * @param action the action of the event.
+	 * @return the new event.
+	 */
+	public ScheduledEvent createEvent(Runnable action) {
+		ScheduledEvent event = new ScheduledEvent(this, action);
+		events.add(event);
+		// every event fits in the heap, so scheduling never grows it while playing
+		if (heap.length < events.size()) {
+			heap = Arrays.copyOf(heap, Math.max(events.size(), heap.length * 2));
+		}
+		return event;
+	}
+	
+	/**
+	 * Cancel an event and forget it, when the sprite owning it leaves the world.
+	 * @param event an event created by this scheduler.
+	 */
+	public void removeEvent(ScheduledEvent event) {
+		cancel(event);
+		events.remove(event);
+	}
+	
+	/**
+	 * Accesses the number of events created by the scheduler.
+	 * @return the number of events.
+	 */
+	public int getNumEvents() {
+		return events.size();
+	}
+	
+	/**
+	 * Write the clock and the state of every event, for a snapshot.
+	 * @param out the buffer receiving STATE_SIZE bytes and EVENT_STATE_SIZE bytes per event.
+	 */
+	void writeState(ByteBuffer out) {
+		out.putLong(time);
+		out.putLong(nextSequence);
+		out.putInt(events.size());
+		for (int i = 0; i < events.size(); i++) {
+			ScheduledEvent event = events.get(i);
+			out.put((byte)(event.isPending() ? 1 : 0));
+			out.putLong(event.deadline);
+			out.putLong(event.period);
+			out.putLong(event.sequence);
+		}
+	}
+	
+	/**
+	 * Restore the clock and the state of every event written by writeState.
+	 * The events have to be created in the same order as in the written scheduler.
+	 * @param in the buffer holding the state.
+	 */
+	void readState(ByteBuffer in) {
+		time = in.getLong();
+		nextSequence = in.getLong();
+		if (in.getInt() != events.size()) {
+			throw new IllegalStateException("The snapshot has a different number of events");
+		}
+		for (int i = 0; i < size; i++) {
+			heap[i].heapIndex = -1;
+			heap[i] = null;
+		}
+		size = 0;
+		for (int i = 0; i < events.size(); i++) {
+			ScheduledEvent event = events.get(i);
+			boolean pending = in.get() != 0;
+			event.deadline = in.getLong();
+			event.period = in.getLong();
+			event.sequence = in.getLong();
+			if (pending) {
+				push(event);
+			}
+		}
+	}
+	
+	/**
+	 * Run an action once after a delay.
+	 * @param delay milliseconds on the game clock before the action runs.
+	 * @param action the action of the event.
+	 * @return the scheduled event.
+	 */
+	public ScheduledEvent schedule(long delay, Runnable action) {
+		ScheduledEvent event = createEvent(action);
+		schedule(event, delay, 0);
+		return event;
+	}
+	
+	/**
+	 * Run an action repeatedly.
+	 * @param delay milliseconds on the game clock before the first run.
+	 * @param period milliseconds on the game clock between two runs.
+	 * @param action the action of the event.
+	 * @return the scheduled event.
+	 */
+	public ScheduledEvent schedulePeriodic(long delay, long period, Runnable action) {
+		ScheduledEvent event = createEvent(action);
+		schedule(event, delay, period);
+		return event;
+	}
+	
+	/**
+	 * Schedule an event again, a pending event is moved to the new time.
+	 * @param event an event created by this scheduler.
+	 * @param delay milliseconds on the game clock before the next run.
+	 * @param period milliseconds between two runs, 0 to run the event once.
+	 */
+	public void schedule(ScheduledEvent event, long delay, long period) {
+		if (period < 0 || delay < 0) {
+			throw new IllegalArgumentException("Negative delay or period");
+		}
+		cancel(event);
+		event.deadline = time + delay;
+		event.period = period;
+		event.sequence = nextSequence++;
+		push(event);
+	}
+	
+	/**
+	 * Cancel an event if it is pending.
+	 * @param event an event created by this scheduler.
+	 */
+	public void cancel(ScheduledEvent event) {
+		int index = event.heapIndex;
+		if (index < 0) {
+			return;
+		}
+		event.heapIndex = -1;
+		size--;
+		if (index != size) {
+			heap[index] = heap[size];
+			heap[index].heapIndex = index;
+			siftDown(index);
+			siftUp(index);
+		}
+		heap[size] = null;
+	}
+	
+	/**
+	 * Move the game clock forward and run every event due in this time, in order of deadline.
+	 * While an event runs, the clock reads the deadline of the event.
+	 * @param delta Time passed since last frame (milliseconds).
+	 */
+	public void advance(int delta) {
+		long target = time + delta;
+		while (size > 0 && heap[0].deadline <= target) {
+			ScheduledEvent event = heap[0];
+			cancel(event);
+			time = event.deadline;
+			if (event.period > 0) {
+				event.deadline += event.period;
+				event.sequence = nextSequence++;
+				push(event);
+			}
+			event.run();
+		}
+		time = target;
+	}
+	
+	private void push(ScheduledEvent event) {
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size * 2);
+		}
+		heap[size] = event;
+		event.heapIndex = size;
+		size++;
+		siftUp(event.heapIndex);
+	}
+	
+	private void siftUp(int index) {
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (!before(heap[index], heap[parent])) {
+				return;
+			}
+			swap(index, parent);
+			index = parent;
+		}
+	}
+	
+	private void siftDown(int index) {
+		while (true) {
+			int smallest = index;
+			int left = index * 2 + 1;
+			int right = left + 1;
+			if (left < size && before(heap[left], heap[smallest])) {
+				smallest = left;
+			}
+			if (right < size && before(heap[right], heap[smallest])) {
+				smallest = right;
+			}
+			if (smallest == index) {
+				return;
+			}
+			swap(index, smallest);
+			index = smallest;
+		}
+	}
+	
+	private static boolean before(ScheduledEvent a, ScheduledEvent b) {
+		return a.deadline < b.deadline || (a.deadline == b.deadline && a.sequence < b.sequence);
+	}
+	
+	private void swap(int i, int j) {
+		ScheduledEvent temp = heap[i];
+		heap[i] = heap[j];
+		heap[j] = temp;
+		heap[i].heapIndex = i;
+		heap[j].heapIndex = j;
+	}
+}
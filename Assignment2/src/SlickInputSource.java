@@ -0,0 +1,21 @@
+import org.newdawn.slick.Input;
+
+/**
+ * Realizes an input source reading the keyboard through Slick.
+ */
+public class SlickInputSource implements InputSource {
+	private Input input;
+	
+	/** 
+     * Initialize an object of class SlickInputSource and set its configuration.
+     * @param input A wrapped for all keyboard, mouse and controller input.
+     */
+	public SlickInputSource(Input input) {
+		this.input = input;
+	}
+	
+	@Override
+	public boolean isKeyPressed(int key) {
+		return input.isKeyPressed(key);
+	}
+}
@@ -0,0 +1,221 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Holds the state of a world in a compact binary encoding, written by World.snapshot and
+ * read back by World.restore. A snapshot is reused for every capture, so taking one does
+ * not allocate once its buffer has grown to the size of the world.
+ * The snapshot writes its header and the sprite records, the world and its scheduler write their own state.
+ * <pre>
+ * int magic, int version, int number of sprites, int level, world state, scheduler state
+ * full snapshot: the record of every sprite in the order of the sprite list
+ * delta snapshot: int index and record of every sprite differing from the baseline, int -1
+ * </pre>
+ * A delta snapshot only holds the sprites which changed since its baseline, a full snapshot
+ * of the same world.
+ */
+public class Snapshot {
+	static final int MAGIC = 0x534C5353;
+	static final int VERSION = 1;
+	// magic, version, number of sprites and level
+	private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Integer.BYTES + Integer.BYTES;
+	// ends the records of a delta snapshot
+	private static final int END_OF_RECORDS = -1;
+	/** the largest record a sprite writes, in bytes */
+	static final int MAX_RECORD_SIZE = 64;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private ByteBuffer data = ByteBuffer.allocate(INITIAL_CAPACITY);
+	// start of every sprite record of a full snapshot, and the end of the last one
+	private int[] recordOffsets = new int[1];
+	private int numSprites;
+	private int level;
+	// null for a full snapshot
+	private Snapshot baseline;
+	private int numChanged;
+
+	/**
+	 * Accesses the size of the encoded state.
+	 * @return the size, in bytes.
+	 */
+	public int size() {
+		return data.limit();
+	}
+
+	/**
+	 * detect whether the snapshot only holds the changes since a baseline.
+	 * @return true for a delta snapshot.
+	 */
+	public boolean isDelta() {
+		return baseline != null;
+	}
+
+	/**
+	 * Accesses the full snapshot a delta snapshot is based on.
+	 * @return the baseline, null for a full snapshot.
+	 */
+	public Snapshot getBaseline() {
+		return baseline;
+	}
+
+	/**
+	 * Accesses the number of sprites of the world.
+	 * @return the number of sprites.
+	 */
+	public int getNumSprites() {
+		return numSprites;
+	}
+
+	/**
+	 * Accesses the number of sprite records in the snapshot.
+	 * @return the number of changed sprites of a delta snapshot, every sprite for a full snapshot.
+	 */
+	public int getNumChanged() {
+		return baseline == null ? numSprites : numChanged;
+	}
+
+	/**
+	 * Accesses the level of the world.
+	 * @return the number of the level, starting from 1.
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Copy the encoded state into a buffer, e.g. to write a crash dump.
+	 * @param out the buffer receiving size() bytes.
+	 */
+	public void copyTo(ByteBuffer out) {
+		ByteBuffer source = data.duplicate();
+		source.rewind();
+		out.put(source);
+	}
+
+	// starts a snapshot and writes its header, the caller writes the state of the world after it
+	ByteBuffer begin(Snapshot baseline, int level, int numSprites) {
+		if (baseline != null && (baseline.isDelta() || baseline.level != level || baseline.numSprites != numSprites)) {
+			throw new IllegalArgumentException("The baseline is not a full snapshot of the same level");
+		}
+		this.baseline = baseline;
+		this.level = level;
+		this.numSprites = numSprites;
+		numChanged = 0;
+		if (recordOffsets.length < numSprites + 1) {
+			recordOffsets = new int[numSprites + 1];
+		}
+		data.clear();
+		ensureRemaining(HEADER_SIZE);
+		data.putInt(MAGIC);
+		data.putInt(VERSION);
+		data.putInt(numSprites);
+		data.putInt(level);
+		return data;
+	}
+
+	/**
+	 * Write the record of every sprite, or of the sprites differing from the baseline, and end the snapshot.
+	 * @param sprites the sprites of the world, in the order of the sprite list.
+	 */
+	void writeSprites(ArrayList<Sprite> sprites) {
+		for (int i = 0; i < sprites.size(); i++) {
+			ByteBuffer buffer = ensureRemaining(Integer.BYTES + MAX_RECORD_SIZE);
+			int start = buffer.position();
+			if (baseline == null) {
+				recordOffsets[i] = start;
+				sprites.get(i).writeState(buffer);
+			} else {
+				// drop the record again when it is the same as in the baseline
+				buffer.putInt(i);
+				sprites.get(i).writeState(buffer);
+				if (baseline.sameRecord(i, buffer, start + Integer.BYTES, buffer.position())) {
+					buffer.position(start);
+				} else {
+					numChanged++;
+				}
+			}
+		}
+		if (baseline == null) {
+			recordOffsets[sprites.size()] = data.position();
+		} else {
+			ensureRemaining(Integer.BYTES).putInt(END_OF_RECORDS);
+		}
+		data.flip();
+	}
+
+	/**
+	 * Read the state of every sprite, from the baseline and then from the records of a delta snapshot.
+	 * @param in the buffer returned by read, after the state of the world and of its scheduler.
+	 * @param sprites the sprites of the world, in the order of the sprite list.
+	 */
+	void readSprites(ByteBuffer in, ArrayList<Sprite> sprites) {
+		if (baseline != null) {
+			ByteBuffer base = baseline.readRecords();
+			for (int i = 0; i < sprites.size(); i++) {
+				sprites.get(i).readState(base, sprites);
+			}
+			for (int i = in.getInt(); i != END_OF_RECORDS; i = in.getInt()) {
+				sprites.get(i).readState(in, sprites);
+			}
+		} else {
+			for (int i = 0; i < sprites.size(); i++) {
+				sprites.get(i).readState(in, sprites);
+			}
+		}
+	}
+
+	ByteBuffer ensureRemaining(int size) {
+		if (data.remaining() < size) {
+			ByteBuffer grown = ByteBuffer.allocate(Math.max(data.capacity() * 2, data.position() + size));
+			data.flip();
+			grown.put(data);
+			data = grown;
+		}
+		return data;
+	}
+
+	/**
+	 * detect whether a record written at the end of the buffer equals the record of a sprite in this snapshot.
+	 * @param index the index of the sprite.
+	 * @param other the buffer holding the other record.
+	 * @param from the start of the other record.
+	 * @param to the end of the other record.
+	 * @return true when both records are the same bytes.
+	 */
+	private boolean sameRecord(int index, ByteBuffer other, int from, int to) {
+		int start = recordOffsets[index];
+		int length = recordOffsets[index + 1] - start;
+		if (length != to - from) {
+			return false;
+		}
+		// eight bytes at a time, then the rest of the record
+		int k = 0;
+		for (; k + Long.BYTES <= length; k += Long.BYTES) {
+			if (data.getLong(start + k) != other.getLong(from + k)) {
+				return false;
+			}
+		}
+		for (; k < length; k++) {
+			if (data.get(start + k) != other.get(from + k)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// checks the header and returns the buffer positioned at the state of the world
+	ByteBuffer read() {
+		data.rewind();
+		if (data.getInt() != MAGIC || data.getInt() != VERSION) {
+			throw new IllegalArgumentException("Not a snapshot of a world");
+		}
+		numSprites = data.getInt();
+		level = data.getInt();
+		return data;
+	}
+
+	private ByteBuffer readRecords() {
+		data.position(recordOffsets[0]);
+		return data;
+	}
+}
@@ -0,0 +1,265 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import utilities.BoundingBox;
+
+/**
+ * Uniform grid broad phase for collision detection.
+ * The screen is divided into cells of World.TILE_SIZE. Tiles never move, so they are
+ * binned once when the level is loaded; every other sprite is re-binned each frame.
+ * Only sprites sharing a cell are handed to the narrow phase.
+ */
+public class SpatialGrid {
+	private static final int CELL_SIZE = World.TILE_SIZE;
+	private static final int INITIAL_CELL_CAPACITY = 4;
+	private static final int CELL_SLACK = 2;
+
+	private final ArrayList<Sprite> sprites;
+	private final int cols;
+	private final int rows;
+
+	// sprite indices in every cell, static sprites first and then dynamic sprites
+	private final int[][] cells;
+	private final int[] cellCount;
+	private final int[] staticCount;
+
+	// indices of sprites which are re-binned every frame, and the slot of every sprite in it, -1 for tiles
+	private int[] dynamic;
+	private int numDynamic;
+	private int[] slotOf;
+	// cell range every sprite is binned in, {minCol, maxCol, minRow, maxRow} from 4 * index
+	private int[] binned;
+
+	// used to drop duplicated indices when a query covers several cells
+	private int[] stamps;
+	private int stamp;
+
+	/**
+     * Initialize an object of class SpatialGrid and bin the static sprites.
+     * @param sprites all sprites of the world, the order of the list is kept by queries.
+     */
+	public SpatialGrid(ArrayList<Sprite> sprites) {
+		this.sprites = sprites;
+		cols = App.SCREEN_WIDTH / CELL_SIZE + 1;
+		rows = App.SCREEN_HEIGHT / CELL_SIZE + 1;
+		cells = new int[cols * rows][INITIAL_CELL_CAPACITY];
+		cellCount = new int[cols * rows];
+		staticCount = new int[cols * rows];
+		dynamic = new int[sprites.size()];
+		slotOf = new int[sprites.size()];
+		binned = new int[4 * sprites.size()];
+		stamps = new int[sprites.size()];
+
+		for (int i = 0; i < sprites.size(); i++) {
+			Sprite sprite = sprites.get(i);
+			if (sprite instanceof Tile) {
+				slotOf[i] = -1;
+				bin(i, sprite.getBroadBounds());
+				insert(i);
+			} else {
+				slotOf[i] = numDynamic;
+				dynamic[numDynamic++] = i;
+			}
+		}
+		System.arraycopy(cellCount, 0, staticCount, 0, cellCount.length);
+		reserveDynamicRoom();
+	}
+	
+	private void reserveDynamicRoom() {
+		/* moving sprites stay in their rows, so every cell gets room for all sprites of its row
+		   and re-binning never grows a cell while playing, the slack is for the player and the extra life */
+		int[] rowLoad = new int[rows];
+		for (int k = 0; k < numDynamic; k++) {
+			BoundingBox box = sprites.get(dynamic[k]).getBroadBounds();
+			for (int r = row(box.getTop()); r <= row(box.getBottom()); r++) {
+				rowLoad[r]++;
+			}
+		}
+		for (int cell = 0; cell < cells.length; cell++) {
+			int needed = staticCount[cell] + rowLoad[cell / cols] + CELL_SLACK;
+			if (cells[cell].length < needed) {
+				cells[cell] = Arrays.copyOf(cells[cell], needed);
+			}
+		}
+	}
+
+	/**
+	 * Re-bin all dynamic sprites according to their current position.
+	 */
+	public void rebin() {
+		System.arraycopy(staticCount, 0, cellCount, 0, cellCount.length);
+		for (int k = 0; k < numDynamic; k++) {
+			int index = dynamic[k];
+			bin(index, sprites.get(index).getBroadBounds());
+			insert(index);
+		}
+	}
+
+	/**
+	 * Re-bin one sprite if it has moved to other cells.
+	 * @param index the index of the sprite in the sprite list.
+	 * @return whether the cells of the sprite have changed.
+	 */
+	public boolean rebin(int index) {
+		if (slotOf[index] < 0) {
+			return false;
+		}
+		BoundingBox box = sprites.get(index).getBroadBounds();
+		int at = 4 * index;
+		if (col(box.getLeft()) == binned[at] && col(box.getRight()) == binned[at + 1]
+				&& row(box.getTop()) == binned[at + 2] && row(box.getBottom()) == binned[at + 3]) {
+			return false;
+		}
+		unbin(index);
+		bin(index, box);
+		insert(index);
+		return true;
+	}
+
+	/**
+	 * Add a sprite spawned after every other sprite. It is re-binned every frame, even a tile.
+	 * @param index the index of the sprite, the last of the sprite list.
+	 */
+	public void add(int index) {
+		if (index >= slotOf.length) {
+			// doubled, so a steady stream of spawns stops growing the arrays
+			int capacity = Math.max(index + 1, 2 * slotOf.length);
+			dynamic = Arrays.copyOf(dynamic, capacity);
+			slotOf = Arrays.copyOf(slotOf, capacity);
+			binned = Arrays.copyOf(binned, 4 * capacity);
+			stamps = Arrays.copyOf(stamps, capacity);
+		}
+		slotOf[index] = numDynamic;
+		dynamic[numDynamic++] = index;
+		bin(index, sprites.get(index).getBroadBounds());
+		insert(index);
+	}
+
+	/**
+	 * Remove a despawned sprite, the sprites after it have already moved down by one in the sprite list.
+	 * @param index the index the sprite had in the sprite list.
+	 */
+	public void remove(int index) {
+		int slot = slotOf[index];
+		if (slot < 0) {
+			unbinStatic(index);
+		} else {
+			unbin(index);
+			// the order of the dynamic sprites does not matter, queries sort their result
+			dynamic[slot] = dynamic[--numDynamic];
+			slotOf[dynamic[slot]] = slot;
+		}
+		int moved = sprites.size() - index;
+		System.arraycopy(slotOf, index + 1, slotOf, index, moved);
+		System.arraycopy(binned, 4 * (index + 1), binned, 4 * index, 4 * moved);
+		for (int k = 0; k < numDynamic; k++) {
+			if (dynamic[k] > index) {
+				dynamic[k]--;
+			}
+		}
+		for (int cell = 0; cell < cells.length; cell++) {
+			int[] items = cells[cell];
+			for (int k = 0; k < cellCount[cell]; k++) {
+				if (items[k] > index) {
+					items[k]--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find all sprites sharing a cell with the box.
+	 * @param box the box to query.
+	 * @param after only sprites whose index is greater than it are returned.
+	 * @param out receives the indices of candidates in ascending order, its length must be
+	 * at least the number of sprites.
+	 * @return the number of candidates.
+	 */
+	public int query(BoundingBox box, int after, int[] out) {
+		stamp++;
+		int count = 0;
+		int maxCol = col(box.getRight());
+		int maxRow = row(box.getBottom());
+		for (int r = row(box.getTop()); r <= maxRow; r++) {
+			for (int c = col(box.getLeft()); c <= maxCol; c++) {
+				int cell = r * cols + c;
+				int[] items = cells[cell];
+				for (int k = 0; k < cellCount[cell]; k++) {
+					int index = items[k];
+					if (index > after && stamps[index] != stamp) {
+						stamps[index] = stamp;
+						out[count++] = index;
+					}
+				}
+			}
+		}
+		// keep the order of the sprite list, onCollision depends on it
+		Arrays.sort(out, 0, count);
+		return count;
+	}
+
+	private void bin(int index, BoundingBox box) {
+		int at = 4 * index;
+		binned[at] = col(box.getLeft());
+		binned[at + 1] = col(box.getRight());
+		binned[at + 2] = row(box.getTop());
+		binned[at + 3] = row(box.getBottom());
+	}
+
+	private void insert(int index) {
+		int at = 4 * index;
+		for (int r = binned[at + 2]; r <= binned[at + 3]; r++) {
+			for (int c = binned[at]; c <= binned[at + 1]; c++) {
+				int cell = r * cols + c;
+				if (cellCount[cell] == cells[cell].length) {
+					cells[cell] = Arrays.copyOf(cells[cell], cells[cell].length * 2);
+				}
+				cells[cell][cellCount[cell]++] = index;
+			}
+		}
+	}
+
+	private void unbin(int index) {
+		int at = 4 * index;
+		for (int r = binned[at + 2]; r <= binned[at + 3]; r++) {
+			for (int c = binned[at]; c <= binned[at + 1]; c++) {
+				int cell = r * cols + c;
+				int[] items = cells[cell];
+				for (int k = staticCount[cell]; k < cellCount[cell]; k++) {
+					if (items[k] == index) {
+						items[k] = items[--cellCount[cell]];
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	private void unbinStatic(int index) {
+		// the last static sprite of the cell fills the hole, and the last dynamic sprite fills its place
+		int at = 4 * index;
+		for (int r = binned[at + 2]; r <= binned[at + 3]; r++) {
+			for (int c = binned[at]; c <= binned[at + 1]; c++) {
+				int cell = r * cols + c;
+				int[] items = cells[cell];
+				for (int k = 0; k < staticCount[cell]; k++) {
+					if (items[k] == index) {
+						int end = --staticCount[cell];
+						items[k] = items[end];
+						items[end] = items[--cellCount[cell]];
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	// sprites outside the screen are clamped into the border cells
+	private int col(float x) {
+		return Math.max(0, Math.min(cols - 1, (int)Math.floor(x / CELL_SIZE)));
+	}
+
+	private int row(float y) {
+		return Math.max(0, Math.min(rows - 1, (int)Math.floor(y / CELL_SIZE)));
+	}
+}
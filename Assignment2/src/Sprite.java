@@ -1,8 +1,10 @@
-import utilities.BoundingBox;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
+import utilities.BoundingBox;
+
+import org.newdawn.slick.Graphics;
 import org.newdawn.slick.Image;
-import org.newdawn.slick.Input;
 import org.newdawn.slick.SlickException;
 
 /**
@@ -14,27 +16,44 @@ public abstract class Sprite {
 	/**
 	 *  a property of sprite, player will lose a live when touch this kind of sprites.
 	 */
-	public final static String HAZARD = "hazard";
+	public final static Tag HAZARD = Tag.of("hazard");
 	/**
 	 *  a property of sprite, player can be on the sprite and move with same speed.
 	 */
-	public final static String RIDE = "ride";
+	public final static Tag RIDE = Tag.of("ride");
 	/**
 	 *  a property of sprite, player cannot entry this kind of sprites.
 	 */
-	public final static String SOLID = "solid";
+	public final static Tag SOLID = Tag.of("solid");
 	/**
 	 *  a property of sprite, player adds a life when touches this kind of sprites.
 	 */
-	public final static String EXTRA_LIFE = "extraLife";
+	public final static Tag EXTRA_LIFE = Tag.of("extraLife");
 	
 	private BoundingBox bounds;
 	private Image image;
+	private String imageSrc;
+	private int textureId;
+	private int width;
+	private int height;
 	private float x;
 	private float y;
+	// position at the start of the current update, used to interpolate rendering
+	private float previousX;
+	private float previousY;
 	private Sprite collideRideableObject = null;
-	// record sprite's special properties
-	private ArrayList<String> tags;
+	// when attached, the position is kept in the lane store
+	private LaneStore lane = null;
+	private int laneSlot;
+	// record sprite's special properties, one bit per tag
+	private long tags;
+	// position in the sprite list of its world, -1 when it is not in a world
+	private int index = -1;
+	// the pool the sprite is taken from and its tags when it was created, null when it is not pooled
+	private SpritePool<?> pool;
+	private long initialTags;
+	// hidden sprites, such as turtles under water, are not drawn
+	private boolean hidden;
 	
 	/** 
      * Initialize an object of class Sprite and set its configuration.
@@ -53,53 +72,74 @@ public abstract class Sprite {
      * @param y y position.
      * @param tags target's tags.
      */
-	public Sprite(String imageSrc, float x, float y, String[] tags) {
+	public Sprite(String imageSrc, float x, float y, Tag[] tags) {
 		setupSprite(imageSrc, x, y);
-		for(String temp : tags) {
-			this.tags.add(temp);
-		}
+		setTags(tags);
+	}
+	
+	/** 
+     * Add new tags
+     * @param tag new target's tag.
+     */
+	public void addTag(Tag tag) {
+		tags |= tag.getMask();
 	}
 	
 	/** 
      * Add new tags
-     * @param tags new target's tags.
+     * @param tag the name of new target's tag.
      */
 	public void addTag(String tag) {
-		if(!tags.contains(tag)) {
-			tags.add(tag);
-		}
+		addTag(Tag.of(tag));
 	}
 	
 	/** 
      * Delete tags
-     * @param tags deleted target's tags.
+     * @param tag deleted target's tag.
+     */
+	public void deleteTag(Tag tag) {
+		tags &= ~tag.getMask();
+	}
+	
+	/** 
+     * Delete tags
+     * @param tag the name of deleted target's tag.
      */
 	public void deleteTag(String tag) {
-		tags.remove(tag);
-		tags.trimToSize();
+		deleteTag(Tag.of(tag));
 	}
 	
 	/** 
      * Set tags
      * @param newTags new target's tags.
      */
-	public void setTags(ArrayList<String> newTags) {
-		tags = newTags;
+	public void setTags(Tag[] newTags) {
+		tags = 0;
+		for (Tag temp : newTags) {
+			addTag(temp);
+		}
 	}
 	
 	private void setupSprite(String imageSrc, float x, float y) {
-		try {
-			image = new Image(imageSrc);
-		} catch (SlickException e) {
-			e.printStackTrace();
+		// images are shared by all sprites, without a display only the size is known
+		if (!AssetCache.isHeadless()) {
+			try {
+				image = AssetCache.getImage(imageSrc);
+			} catch (SlickException e) {
+				e.printStackTrace();
+			}
 		}
+		this.imageSrc = imageSrc;
+		textureId = AssetCache.getTextureId(imageSrc);
+		width = AssetCache.getWidth(imageSrc);
+		height = AssetCache.getHeight(imageSrc);
 		
 		this.x = x;
 		this.y = y;
+		previousX = x;
+		previousY = y;
 		
-		bounds = new BoundingBox(image, (int)x, (int)y);
-		
-		tags = new ArrayList<String> ();		
+		bounds = new BoundingBox((int)x, (int)y, width, height);
 	}
 
 	/**
@@ -107,6 +147,9 @@ public abstract class Sprite {
 	 * @param x	 the target x position
 	 */
 	public final void setX(float x) {
+		if (lane != null) {
+			lane.setX(laneSlot, x);
+		}
 		this.x = x; bounds.setX((int)x); 
 	}
 	
@@ -115,6 +158,9 @@ public abstract class Sprite {
 	 * @param y	 the target y position
 	 */
 	public final void setY(float y) {
+		if (lane != null) {
+			lane.setY(laneSlot, y);
+		}
 		this.y = y; bounds.setY((int)y);
 	}
 	
@@ -123,7 +169,7 @@ public abstract class Sprite {
 	 * @return	the x position of the sprite
 	 */
 	public final float getX() {
-		return x; 
+		return lane == null ? x : lane.getX(laneSlot); 
 	}
 	
 	/**
@@ -131,7 +177,7 @@ public abstract class Sprite {
 	 * @return	the y position of the sprite
 	 */
 	public final float getY() {
-		return y; 
+		return lane == null ? y : lane.getY(laneSlot); 
 	}
 	
 	/**
@@ -139,7 +185,7 @@ public abstract class Sprite {
 	 * @return	the width of sprite's image.
 	 */
 	public int getImageWidth() {
-		return image.getWidth();
+		return width;
 	}
 	
 	/**
@@ -147,7 +193,7 @@ public abstract class Sprite {
 	 * @return	the height of sprite's image.
 	 */
 	public int getImageHeight() {
-		return image.getHeight();
+		return height;
 	}
 	
 	/**
@@ -155,17 +201,81 @@ public abstract class Sprite {
 	 * @return	the bound of sprite.
 	 */
 	public BoundingBox getBounds() {
+		if (lane != null) {
+			// the store moves the sprite without updating its bound
+			bounds.setX((int)lane.getX(laneSlot));
+		}
 		return bounds;
 	}
 	
+	/**
+	 * Accesses the bound used by the broad phase of collision detection,
+	 * it covers every bound which is tested in collides.
+	 * @return	the bound used by the broad phase.
+	 */
+	public BoundingBox getBroadBounds() {
+		return getBounds();
+	}
+	
+	/**
+	 * Keep the position of the sprite in a lane store from now on.
+	 * @param lane the lane store.
+	 * @param laneSlot the slot of the sprite in the store.
+	 */
+	void attach(LaneStore lane, int laneSlot) {
+		this.lane = lane;
+		this.laneSlot = laneSlot;
+	}
+	
+	/**
+	 * Keep the position of the sprite in the sprite again, where the lane store left it.
+	 */
+	void detach() {
+		if (lane != null) {
+			float laneX = lane.getX(laneSlot);
+			float laneY = lane.getY(laneSlot);
+			lane = null;
+			setX(laneX);
+			setY(laneY);
+		}
+	}
+	
+	void setIndex(int index) {
+		this.index = index;
+	}
+	
+	/**
+	 * Accesses the position of the sprite in the sprite list of its world.
+	 * @return the index, -1 when the sprite is not in a world.
+	 */
+	public final int getIndex() {
+		return index;
+	}
+	
+	LaneStore getLane() {
+		return lane;
+	}
+	
+	int getLaneSlot() {
+		return laneSlot;
+	}
+	
+	/**
+	 * detect whether the sprite is moved by a lane store.
+	 * @return true when the position is kept in a lane store.
+	 */
+	public final boolean isInLane() {
+		return lane != null;
+	}
+	
 	/**
 	 * Sets the increment of coordinate of the sprite.
 	 * @param dx the target x position's increment.
 	 * @param dy the target y position's increment.
 	 */
 	public final void move(float dx, float dy) {
-		setX(x + dx);
-		setY(y + dy);
+		setX(getX() + dx);
+		setY(getY() + dy);
 	}
 	
 	
@@ -179,7 +289,7 @@ public abstract class Sprite {
 	 * @return a value of boolean represents whether target is on the screen.
 	 */
 	public final boolean onScreenX(float x) {
-		return x + image.getWidth() / 2.0 <= App.SCREEN_WIDTH && x - image.getWidth() / 2.0 >= 0;
+		return x + width / 2.0 <= App.SCREEN_WIDTH && x - width / 2.0 >= 0;
 	}
 	
 	/**
@@ -188,14 +298,14 @@ public abstract class Sprite {
 	 * @return a value of boolean represents whether target is on the screen.
 	 */
 	public final boolean onScreenY(float y) {
-		return y + image.getHeight() / 2.0 <= App.SCREEN_HEIGHT && y - image.getHeight() / 2.0 >= 0;
+		return y + height / 2.0 <= App.SCREEN_HEIGHT && y - height / 2.0 >= 0;
 	}
 	/**
 	 * judge whether it is on the screen.
 	 * @return a value of boolean represents whether target is on the screen.
 	 */
 	public final boolean onScreen() {
-		return onScreen(x, y);
+		return onScreen(getX(), getY());
 	}
 	
 	/**
@@ -207,20 +317,20 @@ public abstract class Sprite {
 		if (other == null) {
 			return false;
 		}
-		return bounds.intersects(other.bounds);
+		return getBounds().intersects(other.getBounds());
 	}
 	
 	/**
 	 * According the time, update sprite's information
-	 * @param input A wrapped for all keyboard, mouse and controller input.
+	 * @param input the source of keyboard input.
 	 * @param delta Time passed since last frame (milliseconds).
 	 */
-	public void update(Input input, int delta) {
+	public void update(InputSource input, int delta) {
 		/* when the sprite does not contact other sprite with ride tag, 
 		 * the deleted tag hazard should be recovered
 		 * the mission of collideRideableObject is over
 		 */
-		if (collideRideableObject != null && (!bounds.intersects(collideRideableObject.getBounds()) 
+		if (collideRideableObject != null && (!getBounds().intersects(collideRideableObject.getBounds()) 
 				|| !collideRideableObject.hasTag(Sprite.RIDE))) {
 			addTag(Sprite.HAZARD);
 			collideRideableObject = null;
@@ -235,17 +345,231 @@ public abstract class Sprite {
 	public void onCollision(Sprite other) {
 		/* when the sprite with tag hazard contact other sprite with tag ride, 
 		delete hazard tag and save other sprite to collideRideableObjcet to detect contact status */
-		if(tags.contains(Sprite.HAZARD) && other.hasTag(Sprite.RIDE)) {
+		if(hasTag(Sprite.HAZARD) && other.hasTag(Sprite.RIDE)) {
 			deleteTag(Sprite.HAZARD);
 			collideRideableObject = other;	
 		}
 	}
 	
 	/**
-	 * Render the sprite
+	 * detect whether another sprite draws the same image at the same position.
+	 * @param other the sprite to compare with.
+	 * @return true when both sprites look the same on screen.
+	 */
+	public boolean drawsLike(Sprite other) {
+		return imageSrc.equals(other.imageSrc) && getX() == other.getX() && getY() == other.getY();
+	}
+	
+	/**
+	 * Move the sprite to a position without interpolating from the previous one,
+	 * and forget the rideable object it touched, when it is reused in a new level.
+	 * @param x x position.
+	 * @param y y position.
+	 */
+	void reset(float x, float y) {
+		setX(x);
+		setY(y);
+		savePosition();
+		collideRideableObject = null;
+	}
+	
+	/**
+	 * Accesses the source path of the image, sprites with the same path share one texture.
+	 * @return the source path of image.
+	 */
+	public String getImageSrc() {
+		return imageSrc;
+	}
+	
+	/**
+	 * Accesses the number of the image, sprites with the same number share one texture.
+	 * @return the number of the image, from AssetCache.getTextureId.
+	 */
+	public int getTextureId() {
+		return textureId;
+	}
+	
+	/**
+	 * detect whether the sprite is hidden, it is not drawn then.
+	 * @return true when the sprite is hidden.
+	 */
+	public final boolean isHidden() {
+		return hidden;
+	}
+	
+	/**
+	 * Hide the sprite or show it again.
+	 * @param hidden true to stop drawing the sprite.
+	 */
+	protected final void setHidden(boolean hidden) {
+		this.hidden = hidden;
+	}
+	
+	/**
+	 * Accesses the pool the sprite is taken from.
+	 * @return the pool, null when the sprite is not pooled.
+	 */
+	public SpritePool<?> getPool() {
+		return pool;
+	}
+	
+	void setPool(SpritePool<?> pool) {
+		this.pool = pool;
+		initialTags = tags;
+	}
+	
+	/**
+	 * Reset the sprite to the state of a new sprite of its kind, when it is taken from its pool.
+	 * Subclasses with more state reset it after the state of their superclass.
+	 * @param x x position.
+	 * @param y y position.
+	 * @param moveRight represents the direction of movement, ignored by sprites which do not move.
+	 */
+	void reuse(float x, float y, boolean moveRight) {
+		// the lane store of the previous level does not move it any more
+		lane = null;
+		index = -1;
+		tags = initialTags;
+		hidden = false;
+		reset(x, y);
+	}
+	
+	/**
+	 * Register the timed events of the sprite when it is added to a world.
+	 * @param scheduler the scheduler of the world, running on the game clock.
+	 */
+	public void startEvents(Scheduler scheduler) {
+	}
+	
+	/**
+	 * Remove the timed events of the sprite when it is removed from a world.
+	 * @param scheduler the scheduler the events were registered with.
+	 */
+	public void stopEvents(Scheduler scheduler) {
+	}
+	
+	/**
+	 * Write the state of the sprite which changes while playing, for a snapshot.
+	 * Sprites are written as their index in the sprite list.
+	 * Subclasses with more state write it after the state of their superclass.
+	 * @param out the buffer receiving at most Snapshot.MAX_RECORD_SIZE bytes.
+	 */
+	public void writeState(ByteBuffer out) {
+		out.putFloat(getX());
+		out.putFloat(getY());
+		out.putFloat(previousX);
+		out.putFloat(previousY);
+		out.putLong(tags);
+		out.putInt(indexOf(collideRideableObject));
+	}
+	
+	/**
+	 * Restore the state written by writeState.
+	 * @param in the buffer holding the state.
+	 * @param sprites the sprite list of the world, to find written sprites.
+	 */
+	public void readState(ByteBuffer in, ArrayList<Sprite> sprites) {
+		setX(in.getFloat());
+		setY(in.getFloat());
+		previousX = in.getFloat();
+		previousY = in.getFloat();
+		tags = in.getLong();
+		collideRideableObject = spriteAt(in.getInt(), sprites);
+	}
+	
+	/**
+	 * Accesses the index written for a sprite in a snapshot.
+	 * @param sprite a sprite of the world or null.
+	 * @return the index of the sprite, -1 for null.
+	 */
+	protected static int indexOf(Sprite sprite) {
+		return sprite == null ? -1 : sprite.index;
+	}
+	
+	/**
+	 * Find the sprite of an index written in a snapshot.
+	 * @param index the written index.
+	 * @param sprites the sprite list of the world.
+	 * @return the sprite, null for -1.
+	 */
+	protected static Sprite spriteAt(int index, ArrayList<Sprite> sprites) {
+		return index < 0 ? null : sprites.get(index);
+	}
+	
+	/**
+	 * Record the current position as the previous one, at the start of an update.
+	 */
+	public final void savePosition() {
+		previousX = getX();
+		previousY = getY();
+	}
+	
+	/**
+	 * Accesses the x position at the start of the current update.
+	 * @return the previous x position of the sprite.
+	 */
+	public final float getPreviousX() {
+		return previousX;
+	}
+	
+	/**
+	 * Render the sprite between its previous and current position.
+	 * A sprite which jumped further than a tile, such as a wrapped vehicle, is drawn at its current position.
+	 * @param alpha how far the frame is between the previous and the current update, from 0 to 1.
+	 * @param stats the render statistics of the world, counting the draw calls.
+	 */
+	public void render(float alpha, RenderStats stats) {
+		if (image != null && !hidden) {
+			image.drawCentered(getDrawX(alpha), getDrawY(alpha));
+			stats.countDraw();
+		}
+	}
+	
+	// a sprite which jumped further than a tile is not interpolated
+	private boolean interpolates() {
+		return Math.abs(getX() - previousX) <= World.TILE_SIZE && Math.abs(getY() - previousY) <= World.TILE_SIZE;
+	}
+	
+	/**
+	 * Accesses the x position the sprite is drawn at, between its previous and current position.
+	 * @param alpha how far the frame is between the previous and the current update, from 0 to 1.
+	 * @return the x position of the center of the image.
+	 */
+	public final float getDrawX(float alpha) {
+		return interpolates() ? previousX + (getX() - previousX) * alpha : getX();
+	}
+	
+	/**
+	 * Accesses the y position the sprite is drawn at, between its previous and current position.
+	 * @param alpha how far the frame is between the previous and the current update, from 0 to 1.
+	 * @return the y position of the center of the image.
 	 */
-	public void render() {
-		image.drawCentered(x, y);
+	public final float getDrawY(float alpha) {
+		return interpolates() ? previousY + (getY() - previousY) * alpha : getY();
+	}
+	
+	/**
+	 * detect whether any part of the image is drawn on the screen.
+	 * A vehicle wrapping around the screen is drawn outside it for a while.
+	 * @param alpha how far the frame is between the previous and the current update, from 0 to 1.
+	 * @return true when the image is at least partly on the screen.
+	 */
+	public final boolean isDrawnOnScreen(float alpha) {
+		float drawX = getDrawX(alpha);
+		float drawY = getDrawY(alpha);
+		return drawX + width / 2f > 0 && drawX - width / 2f < App.SCREEN_WIDTH
+				&& drawY + height / 2f > 0 && drawY - height / 2f < App.SCREEN_HEIGHT;
+	}
+	
+	/**
+	 * Render the sprite into a graphics context, such as the one of an offscreen image.
+	 * @param g The Slick graphics object, used for drawing.
+	 */
+	public void renderTo(Graphics g) {
+		if (image != null) {
+			// the same position as drawCentered
+			g.drawImage(image, getX() - width / 2, getY() - height / 2);
+		}
 	}
 	
 	/**
@@ -253,12 +577,16 @@ public abstract class Sprite {
 	 * @param tag a tag is detected.
 	 * @return a boolean of result that whether sprite has this tag.
 	 */
+	public boolean hasTag(Tag tag) {
+		return (tags & tag.getMask()) != 0;
+	}
+	
+	/**
+	 * detect whether the sprite has a tag.
+	 * @param tag the name of a tag is detected.
+	 * @return a boolean of result that whether sprite has this tag.
+	 */
 	public boolean hasTag(String tag) {
-		for (String test : tags) {
-			if (tag.equals(test)) {
-				return true;
-			}
-		}
-		return false;
+		return hasTag(Tag.of(tag));
 	}
 }
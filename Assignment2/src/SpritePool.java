@@ -0,0 +1,104 @@
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Keeps sprites of one kind which left the world, so they are used again instead of creating new ones.
+ * A sprite taken from the pool is reset to the state of a new sprite of its kind at a position.
+ * Taking and returning sprites is synchronized, levels are created on a background thread.
+ * @param <T> the kind of sprites.
+ */
+public class SpritePool<T extends Sprite> {
+	private final String name;
+	private final Supplier<T> factory;
+	private final ArrayList<T> free = new ArrayList<>();
+	private int created;
+	private int inUse;
+	private int highWater;
+	
+	/**
+	 * Initialize an object of class SpritePool and set its configuration.
+	 * @param name the name of the kind of sprites, shown in metrics.
+	 * @param factory creates a new sprite when the pool is empty, at any position.
+	 */
+	public SpritePool(String name, Supplier<T> factory) {
+		this.name = name;
+		this.factory = factory;
+	}
+	
+	/**
+	 * Take a sprite from the pool, or create one when it is empty.
+	 * @param x x position.
+	 * @param y y position.
+	 * @param moveRight represents the direction of movement, ignored by sprites which do not move.
+	 * @return a sprite in the state of a new one, until it is released.
+	 */
+	public synchronized T acquire(float x, float y, boolean moveRight) {
+		T sprite;
+		if (free.isEmpty()) {
+			sprite = factory.get();
+			sprite.setPool(this);
+			created++;
+		} else {
+			sprite = free.remove(free.size() - 1);
+		}
+		sprite.reuse(x, y, moveRight);
+		inUse++;
+		highWater = Math.max(highWater, inUse);
+		return sprite;
+	}
+	
+	/**
+	 * Give a sprite back to the pool, it must not be used until it is acquired again.
+	 * @param sprite a sprite acquired from this pool.
+	 */
+	public synchronized void release(Sprite sprite) {
+		if (sprite.getPool() != this) {
+			throw new IllegalArgumentException("The sprite is not from this pool");
+		}
+		// every sprite of the pool is a T
+		@SuppressWarnings("unchecked")
+		T pooled = (T)sprite;
+		free.add(pooled);
+		inUse--;
+	}
+	
+	/**
+	 * Accesses the name of the pool.
+	 * @return the name of the kind of sprites.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Accesses the number of sprites the pool has created.
+	 * @return the number of sprites.
+	 */
+	public synchronized int getCreated() {
+		return created;
+	}
+	
+	/**
+	 * Accesses the number of sprites acquired and not released.
+	 * @return the number of sprites.
+	 */
+	public synchronized int getInUse() {
+		return inUse;
+	}
+	
+	/**
+	 * Accesses the number of sprites waiting in the pool.
+	 * @return the number of sprites.
+	 */
+	public synchronized int getFree() {
+		return free.size();
+	}
+	
+	/**
+	 * Accesses the most sprites which have been in use at the same time.
+	 * @return the number of sprites.
+	 */
+	public synchronized int getHighWater() {
+		return highWater;
+	}
+}
@@ -0,0 +1,79 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The sprite pools of a world: one pool for every type of level file entry, and the pools
+ * registered by sprites for their own icons. The pools of level entries are created with the
+ * world and never change, so the background thread creating levels reads them without a lock.
+ */
+public class SpritePools {
+	private final HashMap<String, SpritePool<Sprite>> levelPools = new HashMap<>();
+	private final ArrayList<SpritePool<?>> pools = new ArrayList<>();
+	
+	/**
+	 * Initialize an object of class SpritePools with a pool for every type of level file entry.
+	 * @param types the types of level file entries, such as water or bus.
+	 */
+	public SpritePools(String... types) {
+		for (String type : types) {
+			SpritePool<Sprite> pool = new SpritePool<>(type, () -> World.createSprite(type, 0, 0, false));
+			levelPools.put(type, pool);
+			pools.add(pool);
+		}
+	}
+	
+	/**
+	 * Take the sprite of a level file entry from its pool.
+	 * @param type the type of the entry, such as water or bus.
+	 * @param x x position.
+	 * @param y y position.
+	 * @param moveRight represents the direction of movement, ignored by tiles.
+	 * @return the sprite, or null when the type is unknown.
+	 */
+	public Sprite acquire(String type, float x, float y, boolean moveRight) {
+		SpritePool<Sprite> pool = levelPools.get(type);
+		return pool == null ? null : pool.acquire(x, y, moveRight);
+	}
+	
+	/**
+	 * Give every pooled sprite of a list back to its pool, other sprites are ignored.
+	 * @param sprites the sprites, e.g. of a level which ended.
+	 */
+	public void releaseAll(List<Sprite> sprites) {
+		for (int i = 0; i < sprites.size(); i++) {
+			SpritePool<?> pool = sprites.get(i).getPool();
+			if (pool != null) {
+				pool.release(sprites.get(i));
+			}
+		}
+	}
+	
+	/**
+	 * Add a pool to the metrics, such as the pool of the life icons of the player.
+	 * @param pool the pool.
+	 */
+	public synchronized void register(SpritePool<?> pool) {
+		pools.add(pool);
+	}
+	
+	/**
+	 * Accesses every pool, for metrics.
+	 * @return a copy of the list of pools.
+	 */
+	public synchronized List<SpritePool<?>> getPools() {
+		return new ArrayList<>(pools);
+	}
+	
+	/**
+	 * Accesses the number of sprites created by all pools.
+	 * @return the number of sprites.
+	 */
+	public synchronized int getCreated() {
+		int total = 0;
+		for (SpritePool<?> pool : pools) {
+			total += pool.getCreated();
+		}
+		return total;
+	}
+}
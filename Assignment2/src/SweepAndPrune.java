@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import utilities.BoundingBox;
+
+/**
+ * Sweep and prune broad phase for collision detection, along the x axis.
+ * Every sprite is kept in a list sorted by the left of its bound. Tiles never move, so they are
+ * sorted once when the level is loaded; every other sprite is sorted again every frame by insertion sort,
+ * which is nearly linear because moving objects only travel horizontally and keep their order.
+ * A vehicle wrapping around the screen or a bike turning back is simply moved to its new place in the list.
+ * A query binary searches the list and sweeps it until the right of the box, pruning by y.
+ */
+public class SweepAndPrune {
+	private final ArrayList<Sprite> sprites;
+	private final Axis staticAxis = new Axis();
+	private final Axis dynamicAxis = new Axis();
+	// slot of every sprite in the dynamic axis, -1 for tiles
+	private int[] slotOf;
+
+	/**
+	 * Sprites sorted by the left of their bound, with their extents.
+	 */
+	private static class Axis {
+		int[] indices = new int[0];
+		float[] lefts = new float[0];
+		float[] rights = new float[0];
+		float[] tops = new float[0];
+		float[] bottoms = new float[0];
+		int size;
+		float maxWidth;
+
+		void add(int index) {
+			if (size == indices.length) {
+				int capacity = Math.max(4, size * 2);
+				indices = Arrays.copyOf(indices, capacity);
+				lefts = Arrays.copyOf(lefts, capacity);
+				rights = Arrays.copyOf(rights, capacity);
+				tops = Arrays.copyOf(tops, capacity);
+				bottoms = Arrays.copyOf(bottoms, capacity);
+			}
+			indices[size++] = index;
+		}
+
+		// shifts the later entries down over the slot
+		void remove(int slot, int[] slotOf) {
+			int moved = size - slot - 1;
+			System.arraycopy(indices, slot + 1, indices, slot, moved);
+			System.arraycopy(lefts, slot + 1, lefts, slot, moved);
+			System.arraycopy(rights, slot + 1, rights, slot, moved);
+			System.arraycopy(tops, slot + 1, tops, slot, moved);
+			System.arraycopy(bottoms, slot + 1, bottoms, slot, moved);
+			size--;
+			if (slotOf != null) {
+				for (int k = slot; k < size; k++) {
+					slotOf[indices[k]] = k;
+				}
+			}
+		}
+
+		int find(int index) {
+			int slot = 0;
+			while (indices[slot] != index) {
+				slot++;
+			}
+			return slot;
+		}
+
+		// the sprites after a despawned one moved down by one in the sprite list
+		void renumber(int removed) {
+			for (int k = 0; k < size; k++) {
+				if (indices[k] > removed) {
+					indices[k]--;
+				}
+			}
+		}
+
+		// returns whether the extent has changed
+		boolean read(int slot, BoundingBox box) {
+			boolean changed = lefts[slot] != box.getLeft() || rights[slot] != box.getRight()
+					|| tops[slot] != box.getTop() || bottoms[slot] != box.getBottom();
+			lefts[slot] = box.getLeft();
+			rights[slot] = box.getRight();
+			tops[slot] = box.getTop();
+			bottoms[slot] = box.getBottom();
+			maxWidth = Math.max(maxWidth, box.getWidth());
+			return changed;
+		}
+
+		void swap(int i, int j, int[] slotOf) {
+			int index = indices[i];
+			indices[i] = indices[j];
+			indices[j] = index;
+			float temp = lefts[i];
+			lefts[i] = lefts[j];
+			lefts[j] = temp;
+			temp = rights[i];
+			rights[i] = rights[j];
+			rights[j] = temp;
+			temp = tops[i];
+			tops[i] = tops[j];
+			tops[j] = temp;
+			temp = bottoms[i];
+			bottoms[i] = bottoms[j];
+			bottoms[j] = temp;
+			if (slotOf != null) {
+				slotOf[indices[i]] = i;
+				slotOf[indices[j]] = j;
+			}
+		}
+
+		// moves the entry of a slot to its place in the order, the other entries are sorted
+		void settle(int slot, int[] slotOf) {
+			while (slot > 0 && lefts[slot - 1] > lefts[slot]) {
+				swap(slot - 1, slot, slotOf);
+				slot--;
+			}
+			while (slot + 1 < size && lefts[slot + 1] < lefts[slot]) {
+				swap(slot, slot + 1, slotOf);
+				slot++;
+			}
+		}
+
+		void sort(int[] slotOf) {
+			for (int k = 1; k < size; k++) {
+				for (int m = k; m > 0 && lefts[m - 1] > lefts[m]; m--) {
+					swap(m - 1, m, slotOf);
+				}
+			}
+		}
+
+		int query(BoundingBox box, int after, int[] out, int count) {
+			// the first sprite whose bound may reach the left of the box, with a pixel to spare for rounding
+			float from = box.getLeft() - maxWidth - 1;
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (lefts[mid] < from) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			for (int k = low; k < size && lefts[k] <= box.getRight(); k++) {
+				// the same inclusive test as BoundingBox.intersects
+				if (indices[k] > after && rights[k] >= box.getLeft()
+						&& tops[k] <= box.getBottom() && bottoms[k] >= box.getTop()) {
+					out[count++] = indices[k];
+				}
+			}
+			return count;
+		}
+	}
+
+	/**
+     * Initialize an object of class SweepAndPrune and sort every sprite.
+     * @param sprites all sprites of the world, the order of the list is kept by queries.
+     */
+	public SweepAndPrune(ArrayList<Sprite> sprites) {
+		this.sprites = sprites;
+		slotOf = new int[sprites.size()];
+		for (int i = 0; i < sprites.size(); i++) {
+			Sprite sprite = sprites.get(i);
+			if (sprite instanceof Tile) {
+				slotOf[i] = -1;
+				staticAxis.add(i);
+				staticAxis.read(staticAxis.size - 1, sprite.getBroadBounds());
+			} else {
+				slotOf[i] = dynamicAxis.size;
+				dynamicAxis.add(i);
+			}
+		}
+		staticAxis.sort(null);
+		refresh();
+	}
+
+	/**
+	 * Read the bounds of every moving sprite again and restore the order of the list.
+	 */
+	public void refresh() {
+		dynamicAxis.maxWidth = 0;
+		for (int k = 0; k < dynamicAxis.size; k++) {
+			dynamicAxis.read(k, sprites.get(dynamicAxis.indices[k]).getBroadBounds());
+		}
+		dynamicAxis.sort(slotOf);
+	}
+
+	/**
+	 * Read the bound of one sprite again, if it has moved.
+	 * @param index the index of the sprite in the sprite list.
+	 * @return whether the bound of the sprite has changed.
+	 */
+	public boolean update(int index) {
+		int slot = slotOf[index];
+		if (slot < 0) {
+			return false;
+		}
+		if (!dynamicAxis.read(slot, sprites.get(index).getBroadBounds())) {
+			return false;
+		}
+		dynamicAxis.settle(slot, slotOf);
+		return true;
+	}
+
+	/**
+	 * Add a sprite spawned after every other sprite.
+	 * @param index the index of the sprite, the last of the sprite list.
+	 */
+	public void add(int index) {
+		if (index >= slotOf.length) {
+			// doubled, so a steady stream of spawns stops growing the array
+			slotOf = Arrays.copyOf(slotOf, Math.max(index + 1, 2 * slotOf.length));
+		}
+		BoundingBox box = sprites.get(index).getBroadBounds();
+		if (sprites.get(index) instanceof Tile) {
+			slotOf[index] = -1;
+			staticAxis.add(index);
+			staticAxis.read(staticAxis.size - 1, box);
+			staticAxis.settle(staticAxis.size - 1, null);
+		} else {
+			slotOf[index] = dynamicAxis.size;
+			dynamicAxis.add(index);
+			dynamicAxis.read(slotOf[index], box);
+			dynamicAxis.settle(slotOf[index], slotOf);
+		}
+	}
+
+	/**
+	 * Remove a despawned sprite, the sprites after it have already moved down by one in the sprite list.
+	 * @param index the index the sprite had in the sprite list.
+	 */
+	public void remove(int index) {
+		if (slotOf[index] < 0) {
+			staticAxis.remove(staticAxis.find(index), null);
+		} else {
+			dynamicAxis.remove(slotOf[index], slotOf);
+		}
+		System.arraycopy(slotOf, index + 1, slotOf, index, sprites.size() - index);
+		staticAxis.renumber(index);
+		dynamicAxis.renumber(index);
+	}
+
+	/**
+	 * Find all sprites whose bound intersects the box.
+	 * @param box the box to query.
+	 * @param after only sprites whose index is greater than it are returned.
+	 * @param out receives the indices of candidates in ascending order, its length must be
+	 * at least the number of sprites.
+	 * @return the number of candidates.
+	 */
+	public int query(BoundingBox box, int after, int[] out) {
+		int count = staticAxis.query(box, after, out, 0);
+		count = dynamicAxis.query(box, after, out, count);
+		// keep the order of the sprite list, onCollision depends on it
+		Arrays.sort(out, 0, count);
+		return count;
+	}
+}
@@ -0,0 +1,57 @@
+import java.util.HashMap;
+
+/**
+ * Represents a property of sprites, such as hazard or ride.
+ * Tags are interned by name and every tag owns one bit, so the tags of a sprite
+ * are kept in a single long and testing, adding or deleting a tag is one bit operation.
+ */
+public final class Tag {
+	private static final int MAX_TAGS = Long.SIZE;
+	private static final HashMap<String, Tag> TAGS = new HashMap<>();
+	
+	private final String name;
+	private final long mask;
+	
+	private Tag(String name, int bit) {
+		this.name = name;
+		this.mask = 1L << bit;
+	}
+	
+	/**
+	 * Accesses the tag of a name, the tag is created when the name is new.
+	 * @param name the name of the tag.
+	 * @return the only tag with this name.
+	 */
+	public static synchronized Tag of(String name) {
+		Tag tag = TAGS.get(name);
+		if (tag == null) {
+			if (TAGS.size() == MAX_TAGS) {
+				throw new IllegalStateException("No more than " + MAX_TAGS + " tags can be defined: " + name);
+			}
+			tag = new Tag(name, TAGS.size());
+			TAGS.put(name, tag);
+		}
+		return tag;
+	}
+	
+	/**
+	 * Accesses the name of the tag.
+	 * @return the name of the tag.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Accesses the bit owned by the tag.
+	 * @return a mask with only the bit of the tag set.
+	 */
+	public long getMask() {
+		return mask;
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+}
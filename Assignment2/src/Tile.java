@@ -24,7 +24,7 @@ public class Tile extends Sprite {
      * @return a new object of Tile using water image.
      */
 	public static Tile createWaterTile(float x, float y) {
-		return new Tile(WATER_PATH, x, y, new String[] { Sprite.HAZARD });
+		return new Tile(WATER_PATH, x, y, new Tag[] { Sprite.HAZARD });
 	}
 	
 	/** 
@@ -34,7 +34,7 @@ public class Tile extends Sprite {
      * @return a new object of Tile using tree image.
      */
 	public static Tile createTreeTile(float x, float y) {
-		return new Tile(TREE_PATH, x, y, new String[] { Sprite.SOLID });
+		return new Tile(TREE_PATH, x, y, new Tag[] { Sprite.SOLID });
 	}
 	
 	/** 
@@ -64,7 +64,7 @@ public class Tile extends Sprite {
      * @param y y position.
      * @param tags target's tags.
      */
-	public Tile(String imageSrc, float x, float y, String[] tags) {		
+	public Tile(String imageSrc, float x, float y, Tag[] tags) {		
 		super(imageSrc, x, y, tags);
 	}
 }
\ No newline at end of file
@@ -1,5 +1,5 @@
-import java.util.Timer;
-import java.util.TimerTask;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 /**
  * Represents a special sprite, turtle. Every 9 seconds, it disappears for 2 seconds.
@@ -10,8 +10,8 @@ public class Turtle extends RideableObject {
 	private static final long DISAPEAR_FREQUENCY_MILLISECOND = 7000;
 	private static final long DISAPEAR_MILLISECOND = 2000;
 	
-	private boolean visible;
-	private Timer underwaterTimer;
+	private ScheduledEvent appearEvent;
+	private ScheduledEvent disappearEvent;
 	
 	/** 
      * Initialize an object of class Turtle and set its configuration.
@@ -21,43 +21,43 @@ public class Turtle extends RideableObject {
      */
 	public Turtle(float x, float y, boolean moveRight) {
 		super(TURTLE_PATH, x, y, TURTLE_SPEED, moveRight);
-		visible = true;
-		underwaterTimer = new Timer();
-		// start the loop
-		underwaterTimer(DISAPEAR_FREQUENCY_MILLISECOND, DISAPEAR_MILLISECOND);
 	}
 	
-	private void underwaterTimer(long disapearFrequency, long disapearTime) {
-		underwaterTimer.schedule(new TimerTask () {
-			public void run() {
-				// turtle appears
-				visible = true;
-				addTag(Sprite.RIDE);
-				deleteTag(Sprite.HAZARD);
-				// set a timer to make turtle underwater
-				timer(DISAPEAR_FREQUENCY_MILLISECOND);
-			}
-		}, 0, disapearFrequency + disapearTime);
+	@Override
+	public void startEvents(Scheduler scheduler) {
+		// start the loop, the turtle appears at the start of every cycle and disappears before its end
+		long cycle = DISAPEAR_FREQUENCY_MILLISECOND + DISAPEAR_MILLISECOND;
+		appearEvent = scheduler.schedulePeriodic(0, cycle, this::appear);
+		disappearEvent = scheduler.schedulePeriodic(DISAPEAR_FREQUENCY_MILLISECOND, cycle, this::disappear);
 	}
 	
-	private void timer(long period) {
-		Timer timer = new Timer();
-		timer.schedule(new TimerTask() {
-			public void run() {
-				// turtle disappears
-				visible = false;
-				deleteTag(Sprite.RIDE);
-				addTag(Sprite.HAZARD);
-			}
-		}, period);
+	@Override
+	public void stopEvents(Scheduler scheduler) {
+		scheduler.removeEvent(appearEvent);
+		scheduler.removeEvent(disappearEvent);
+	}
+	
+	private void appear() {
+		setHidden(false);
+		addTag(Sprite.RIDE);
+		deleteTag(Sprite.HAZARD);
+	}
+	
+	private void disappear() {
+		setHidden(true);
+		deleteTag(Sprite.RIDE);
+		addTag(Sprite.HAZARD);
+	}
+	
+	@Override
+	public void writeState(ByteBuffer out) {
+		super.writeState(out);
+		out.put((byte)(isHidden() ? 0 : 1));
 	}
 	
 	@Override
-	public void render() {
-		if (visible == false) {
-			return;
-		} else {
-			super.render();
-		}
+	public void readState(ByteBuffer in, ArrayList<Sprite> sprites) {
+		super.readState(in, sprites);
+		setHidden(in.get() == 0);
 	}
-}
\ No newline at end of file
+}
@@ -24,7 +24,7 @@ public abstract class Vehicle extends MovingObject {
      * @param moveRight represents the direction of movement.
      * @param tags target's tags.
      */
-	public Vehicle(String imageSrc, float x, float y, float speed, boolean moveRight, String[] tags) {
+	public Vehicle(String imageSrc, float x, float y, float speed, boolean moveRight, Tag[] tags) {
 		super(imageSrc, x, y, speed, moveRight, tags);
 	}
 }
@@ -2,10 +2,26 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.newdawn.slick.Graphics;
-import org.newdawn.slick.Input;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+
+import utilities.BoundingBox;
 
 /**
  * Fundamental class for the game.
@@ -34,11 +50,18 @@ public class World {
 	public static final float[][] HOLE_X_RANGE = new float[][] {{72, 168}, {264, 360}, 
 		{456, 552}, {648, 744}, {840, 936}};
 	
-	private static boolean[] holesStatus;
+	private boolean[] holesStatus;
 	
 	private static final String[] LEVEL_PATH = { "assets/levels/0.lvl", "assets/levels/1.lvl"};
 	private static final int INITIAL_LEVEL = 1;
-	private static int level = INITIAL_LEVEL;
+	private final LevelSource levelSource;
+	private int level;
+	// the next level, created on a thread of the world while the current one is played, null when it is not prefetched
+	private final ExecutorService levelLoader;
+	// the thread of the loader stops when it has been idle this long, so a dropped world leaves no thread behind
+	private static final long LOADER_KEEP_ALIVE_SECONDS = 1;
+	private Future<ArrayList<Sprite>> nextLevel;
+	private int nextLevelNumber;
 	
 	private static final String DELIMITER = ",";
 	
@@ -53,23 +76,255 @@ public class World {
 	private static final String RACECAR = "racecar";
 	private static final String TURTLE = "turtle";
 	private static final String BIKE = "bike";
+	private static final String[] TYPES = {WATER, GRASS, TREE, BUS, LOG, LONGLOG, BULLDOZER, RACECAR, TURTLE, BIKE};
 	
 	private static final int INITIAL_NUM_LIVES = 3;
-	private static int numLives = INITIAL_NUM_LIVES;
-		
-	private static ArrayList<Sprite> sprites;
+	private int numLives = INITIAL_NUM_LIVES;
+	// holes reached in all levels
+	private int score;
+	private Outcome outcome = Outcome.RUNNING;
+	// used by every random decision of the world, such as where an extra life appears
+	private final long seed;
+	private final GameRandom random;
+	
+	// size of the state of the world in a snapshot, without the scheduler and the sprites:
+	// lives, score, outcome, random generator and holes
+	private static final int STATE_SIZE = Integer.BYTES + Integer.BYTES + Byte.BYTES + GameRandom.STATE_SIZE + Byte.BYTES;
+	private static final Outcome[] OUTCOMES = Outcome.values();
+	
+	private ArrayList<Sprite> sprites;
+	// sprites of ended levels are used again by the next ones
+	private final SpritePools spritePools = new SpritePools(TYPES);
+	// kept from level to level
+	private Player player;
+	private ExtraLife extraLife;
+	// the sprite list as of the last change, for readers on other threads, copied when one asks for it
+	// so changing the list allocates nothing; the list only changes while holding the lock
+	private final Object viewLock = new Object();
+	private List<Sprite> spriteView;
+	// changes of the sprite list and of tags, posted from any thread and applied at the start of a tick
+	private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();
+	// tiles drawn before any other sprite are baked into one background image,
+	// the other sprites are drawn in an order which keeps sprites with the same texture together
+	private ArrayList<Sprite> staticLayer;
+	private ArrayList<Sprite> dynamicLayer;
+	private Image background;
+	private boolean backgroundFailed;
+	// keeps moving objects in primitive arrays when enabled
+	private final boolean useLaneStore;
+	private LaneStore laneStore;
+	// lanes are moved in parallel when the lane store holds at least this many objects
+	private final int parallelLaneThreshold;
+	private final ForkJoinPool lanePool;
+	// runs timed events of sprites on the game clock
+	private Scheduler scheduler;
+	// broad phase of collision detection, only the structures of the selected one are built
+	private final BroadPhase broadPhase;
+	private SpatialGrid grid;
+	// sprites by row, used by the queries of the player
+	private RowIndex rowIndex;
+	private SweepAndPrune sweepAndPrune;
+	
+	// moving objects are also tested along their movement in the tick, so fast ones cannot jump over sprites
+	private final boolean sweptCollisions;
+	// a moving object may be this far from a sprite it passed over in the current tick
+	private float maxSpeed;
+	private int tickDelta;
+	private final BoundingBox queryBound = new BoundingBox(0, 0, 0, 0);
+	private final BoundingBox sweptBound = new BoundingBox(0, 0, 0, 0);
+	// movement within a tick further than its speed allows by more than this is a wraparound
+	private static final float WRAP_TOLERANCE = 1;
+	// query buffer of the broad phase
+	private int[] candidates;
+	// pairs tested by the narrow phase and colliding pairs in the current tick
+	private int collisionTests;
+	private int collisionPairs;
+	private CollisionListener collisionListener;
+	private final Profiler profiler = new Profiler();
+	private final RenderStats renderStats = new RenderStats();
 	/** 
      * Initialize an object of class World and set its configuration.
      */
 	public World() {
-		holesStatus = new boolean[HOLE_X_RANGE.length];
-		sprites = new ArrayList<>();
-		// read level file
-		readLevelFile(level);
-		// create player
-		sprites.add(new Player(INITIAL_X_PLAYER, INITIAL_Y_PLAYER));
-		// create extraLife
-		sprites.add(new ExtraLife());
+		this(new Random().nextLong());
+	}
+	
+	/** 
+     * Initialize an object of class World with a seed and set its configuration.
+     * Worlds with the same seed and the same input play the same game.
+     * @param seed the seed of the random decisions of the world.
+     */
+	public World(long seed) {
+		this(seed, new LevelFiles(LEVEL_PATH), INITIAL_LEVEL, new WorldConfig());
+	}
+	
+	/** 
+     * Initialize an object of class World playing selected level files in order.
+     * @param levelPaths the paths of the level files.
+     */
+	public World(String... levelPaths) {
+		this(new Random().nextLong(), levelPaths);
+	}
+	
+	/** 
+     * Initialize an object of class World playing selected level files in order.
+     * Worlds with the same seed and the same input play the same game.
+     * @param seed the seed of the random decisions of the world.
+     * @param levelPaths the paths of the level files.
+     */
+	public World(long seed, String... levelPaths) {
+		this(seed, new LevelFiles(levelPaths), 1, new WorldConfig());
+	}
+	
+	/** 
+     * Initialize an object of class World playing the levels of a source, such as a ProceduralLevel.
+     * Worlds with the same seed, the same levels and the same input play the same game.
+     * @param seed the seed of the random decisions of the world.
+     * @param levelSource the source of the levels, played from level 1.
+     */
+	public World(long seed, LevelSource levelSource) {
+		this(seed, levelSource, new WorldConfig());
+	}
+	
+	/** 
+     * Initialize an object of class World playing the levels of a source with the settings of a configuration.
+     * Worlds with the same seed, the same levels and the same input play the same game whatever their configuration.
+     * @param seed the seed of the random decisions of the world.
+     * @param levelSource the source of the levels, played from level 1.
+     * @param config the settings of the simulation, they are read once so later changes do not affect the world.
+     */
+	public World(long seed, LevelSource levelSource, WorldConfig config) {
+		this(seed, levelSource, 1, config);
+	}
+	
+	private World(long seed, LevelSource levelSource, int level, WorldConfig config) {
+		this.levelSource = levelSource;
+		this.seed = seed;
+		random = new GameRandom(seed);
+		useLaneStore = config.getUseLaneStore();
+		parallelLaneThreshold = config.getParallelLaneThreshold();
+		lanePool = config.getLanePool();
+		broadPhase = config.getBroadPhase();
+		sweptCollisions = config.getSweptCollisions();
+		levelLoader = config.getPrefetchLevels() ? createLevelLoader() : null;
+		this.level = level;
+		loadLevel();
+	}
+	
+	private void loadLevel() {
+		long start = System.nanoTime();
+		if (holesStatus == null) {
+			holesStatus = new boolean[HOLE_X_RANGE.length];
+		} else {
+			Arrays.fill(holesStatus, false);
+		}
+		// the sprites of the previous level go back to their pools
+		if (sprites != null) {
+			spritePools.releaseAll(sprites);
+		}
+		// read level file, or generate the level, unless it was done in the background
+		ArrayList<Sprite> levelSprites = takeLevel(level);
+		// the player and the extra life of the previous level start again
+		if (player == null) {
+			player = new Player(this, INITIAL_X_PLAYER, INITIAL_Y_PLAYER);
+			extraLife = new ExtraLife(this);
+		} else {
+			player.startLevel();
+			extraLife.startLevel();
+		}
+		levelSprites.add(player);
+		levelSprites.add(extraLife);
+		synchronized (viewLock) {
+			sprites = levelSprites;
+			spriteView = null;
+		}
+		
+		scheduler = new Scheduler();
+		for (Sprite sprite : sprites) {
+			sprite.startEvents(scheduler);
+		}
+		
+		buildStructures();
+		profiler.record(Profiler.Phase.LOAD_LEVEL, System.nanoTime() - start);
+		// the next level is created while this one is played
+		prepareLevel(level + 1);
+	}
+	
+	private static ExecutorService createLevelLoader() {
+		// one thread at most, started when a level is prepared
+		return new ThreadPoolExecutor(0, 1, LOADER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), 
+				runnable -> {
+					Thread thread = new Thread(runnable, "level-loader");
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+	
+	private ArrayList<Sprite> takeLevel(int number) {
+		Future<ArrayList<Sprite>> prepared = nextLevel;
+		nextLevel = null;
+		if (prepared != null && nextLevelNumber == number && prepared.isDone()) {
+			try {
+				return prepared.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+			}
+		} else if (prepared != null) {
+			// not ready yet, creating it here is faster than waiting, or a snapshot of another level was restored
+			discardLevel(prepared);
+		}
+		return levelSource.createLevel(number, spritePools);
+	}
+	
+	private void discardLevel(Future<ArrayList<Sprite>> prepared) {
+		// a finished level goes back to the pools now, a running one when the loader has finished it,
+		// the loader runs one task at a time in order so it never waits
+		if (prepared.isDone()) {
+			releaseLevel(prepared);
+		} else {
+			levelLoader.execute(() -> releaseLevel(prepared));
+		}
+	}
+	
+	private void releaseLevel(Future<ArrayList<Sprite>> prepared) {
+		try {
+			spritePools.releaseAll(prepared.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	private void prepareLevel(int number) {
+		if (levelLoader == null || !levelSource.hasLevel(number)) {
+			return;
+		}
+		nextLevelNumber = number;
+		nextLevel = levelLoader.submit(() -> levelSource.createLevel(number, spritePools));
+	}
+	
+	// index the sprite list of a new level and build everything depending on it
+	private void buildStructures() {
+		for (int i = 0; i < sprites.size(); i++) {
+			sprites.get(i).setIndex(i);
+		}
+		
+		splitLayers();
+		laneStore = useLaneStore ? new LaneStore(sprites) : null;
+		
+		grid = broadPhase == BroadPhase.GRID ? new SpatialGrid(sprites) : null;
+		rowIndex = broadPhase == BroadPhase.GRID ? new RowIndex(sprites) : null;
+		sweepAndPrune = broadPhase == BroadPhase.SWEEP_AND_PRUNE ? new SweepAndPrune(sprites) : null;
+		candidates = new int[sprites.size()];
+		maxSpeed = 0;
+		for (int i = 0; i < sprites.size(); i++) {
+			if (sprites.get(i) instanceof MovingObject) {
+				maxSpeed = Math.max(maxSpeed, ((MovingObject)sprites.get(i)).getSpeed());
+			}
+		}
 	}
 	
 	/** 
@@ -77,7 +332,7 @@ public class World {
      * @param holeID the selected hole's ID
      * @return the status of the selected hole
      */
-	public static boolean getHoleStatus(int holeID) {
+	public boolean getHoleStatus(int holeID) {
 		return holesStatus[holeID];
 	}
 	
@@ -85,75 +340,703 @@ public class World {
      * Access the number of lives
      * @return the number of lives.
      */
-	public static int getNumLives() {
+	public int getNumLives() {
 		return numLives;
 	}
 	
 	/**
-	 * Sets the number of lives.
+	 * Sets the number of lives, the game is lost when no life remains.
 	 * @param numLives the target number of lives.
 	 */
-	public static void setNumLives(int numLives) {
-		World.numLives = numLives;
+	public void setNumLives(int numLives) {
+		this.numLives = numLives;
+		if (numLives == 0) {
+			outcome = Outcome.LOST;
+		}
 	}
 	
 	/** 
-     * Access the sprites
+     * Access the sprites, only on the thread updating the world
      * @return the sprites.
      */
-	public static ArrayList<Sprite> getSprites() {
+	public ArrayList<Sprite> getSprites() {
 		return sprites;
 	}
 	
+	/** 
+     * Access the sprite pools of the world, for metrics
+     * @return the pools.
+     */
+	public SpritePools getSpritePools() {
+		return spritePools;
+	}
+	
+	/** 
+     * Access the sprites from any thread
+     * @return an unmodifiable copy of the sprite list, as it was after the last change.
+     */
+	public List<Sprite> getSpriteView() {
+		synchronized (viewLock) {
+			if (spriteView == null) {
+				// a copy, the sprite list changes again while readers may still use it
+				spriteView = Collections.unmodifiableList(new ArrayList<>(sprites));
+			}
+			return spriteView;
+		}
+	}
+	
+	/**
+	 * Add a sprite to the current level at the start of the next tick, after every other sprite.
+	 * It may be called from any thread.
+	 * @param sprite a sprite which is not in the world.
+	 */
+	public void spawn(Sprite sprite) {
+		commands.add(new Command(Command.Kind.SPAWN, sprite, null));
+	}
+	
+	/**
+	 * Remove a sprite from the current level at the start of the next tick.
+	 * It may be called from any thread.
+	 * @param sprite a sprite of the world, other than the player.
+	 */
+	public void despawn(Sprite sprite) {
+		if (sprite instanceof Player) {
+			throw new IllegalArgumentException("The player cannot be removed");
+		}
+		commands.add(new Command(Command.Kind.DESPAWN, sprite, null));
+	}
+	
+	/**
+	 * Add a tag to a sprite at the start of the next tick.
+	 * It may be called from any thread, unlike Sprite.addTag.
+	 * @param sprite a sprite of the world.
+	 * @param tag the tag to add.
+	 */
+	public void addTag(Sprite sprite, Tag tag) {
+		commands.add(new Command(Command.Kind.ADD_TAG, sprite, tag));
+	}
+	
+	/**
+	 * Delete a tag of a sprite at the start of the next tick.
+	 * It may be called from any thread, unlike Sprite.deleteTag.
+	 * @param sprite a sprite of the world.
+	 * @param tag the tag to delete.
+	 */
+	public void deleteTag(Sprite sprite, Tag tag) {
+		commands.add(new Command(Command.Kind.DELETE_TAG, sprite, tag));
+	}
+	
+	/**
+	 * A change of the sprite list or of the tags of a sprite, waiting for the next tick.
+	 */
+	private static class Command {
+		enum Kind { SPAWN, DESPAWN, ADD_TAG, DELETE_TAG }
+		
+		final Kind kind;
+		final Sprite sprite;
+		final Tag tag;
+		
+		Command(Kind kind, Sprite sprite, Tag tag) {
+			this.kind = kind;
+			this.sprite = sprite;
+			this.tag = tag;
+		}
+	}
+	
+	private boolean contains(Sprite sprite) {
+		int index = sprite.getIndex();
+		return index >= 0 && index < sprites.size() && sprites.get(index) == sprite;
+	}
+	
+	// apply the posted commands in order, the only place the sprite list changes during a level
+	private void applyCommands() {
+		synchronized (viewLock) {
+			for (Command command = commands.poll(); command != null; command = commands.poll()) {
+				Sprite sprite = command.sprite;
+				switch (command.kind) {
+				case SPAWN:
+					if (!contains(sprite)) {
+						sprites.add(sprite);
+						sprite.setIndex(sprites.size() - 1);
+						spriteAdded(sprite);
+						sprite.startEvents(scheduler);
+						spriteView = null;
+					}
+					break;
+				case DESPAWN:
+					// a sprite of a previous level is not in the world any more
+					if (contains(sprite)) {
+						int index = sprite.getIndex();
+						sprites.remove(index);
+						// the later sprites moved down, the next commands find them by their index
+						for (int i = index; i < sprites.size(); i++) {
+							sprites.get(i).setIndex(i);
+						}
+						spriteRemoved(sprite, index);
+						sprite.stopEvents(scheduler);
+						sprite.setIndex(-1);
+						spriteView = null;
+					}
+					break;
+				case ADD_TAG:
+					sprite.addTag(command.tag);
+					break;
+				default:
+					sprite.deleteTag(command.tag);
+					break;
+				}
+			}
+		}
+	}
+	
+	// the structures follow the sprite list one sprite at a time, rebuilding them would allocate every tick
+	private void spriteAdded(Sprite sprite) {
+		// drawn after every other sprite, like its place in the sprite list
+		dynamicLayer.add(sprite);
+		// a spawned object is not in the lane store, it moves itself
+		int index = sprite.getIndex();
+		if (broadPhase == BroadPhase.GRID) {
+			grid.add(index);
+			rowIndex.add(index);
+		} else if (broadPhase == BroadPhase.SWEEP_AND_PRUNE) {
+			sweepAndPrune.add(index);
+		}
+		if (candidates.length < sprites.size()) {
+			candidates = new int[Math.max(sprites.size(), 2 * candidates.length)];
+		}
+		if (sprite instanceof MovingObject) {
+			maxSpeed = Math.max(maxSpeed, ((MovingObject)sprite).getSpeed());
+		}
+	}
+	
+	private void spriteRemoved(Sprite sprite, int index) {
+		if (sprite.isInLane()) {
+			laneStore.release(sprite.getLaneSlot());
+			sprite.detach();
+		}
+		if (!dynamicLayer.remove(sprite)) {
+			// a tile of the background, which is baked again without it
+			staticLayer.remove(sprite);
+			dropBackground();
+		}
+		if (broadPhase == BroadPhase.GRID) {
+			grid.remove(index);
+			rowIndex.remove(index);
+		} else if (broadPhase == BroadPhase.SWEEP_AND_PRUNE) {
+			sweepAndPrune.remove(index);
+		}
+		// the highest speed is kept, it only widens the queries of swept collisions
+	}
+	
+	/** 
+     * Access the current level
+     * @return the number of the current level, starting from 1.
+     */
+	public int getLevel() {
+		return level;
+	}
+	
+	/** 
+     * Access the score, the number of holes reached in all levels
+     * @return the score.
+     */
+	public int getScore() {
+		return score;
+	}
+	
+	/** 
+     * Access the state of the game
+     * @return whether the game is running, won or lost.
+     */
+	public Outcome getOutcome() {
+		return outcome;
+	}
+	
+	/** 
+     * Access the seed of the random decisions of the world
+     * @return the seed.
+     */
+	public long getSeed() {
+		return seed;
+	}
+	
+	/** 
+     * Draw a random number, the same sequence as a java.util.Random created with the seed of the world.
+     * @param bound the upper bound, exclusive, it must be positive.
+     * @return a random number from 0 to bound - 1.
+     */
+	public int nextRandom(int bound) {
+		return random.nextInt(bound);
+	}
+	
+	/**
+	 * Save the state of the world into a full snapshot.
+	 * @param out the snapshot receiving the state, its previous content is replaced.
+	 */
+	public void snapshot(Snapshot out) {
+		snapshot(out, null);
+	}
+	
+	/**
+	 * Save the state of the world into a snapshot, only the sprites which differ from a baseline are written.
+	 * @param out the snapshot receiving the state, its previous content is replaced.
+	 * @param baseline a full snapshot of the same level, null to write a full snapshot.
+	 */
+	public void snapshot(Snapshot out, Snapshot baseline) {
+		out.begin(baseline, level, sprites.size());
+		ByteBuffer buffer = out.ensureRemaining(STATE_SIZE + Scheduler.STATE_SIZE
+				+ scheduler.getNumEvents() * Scheduler.EVENT_STATE_SIZE);
+		writeState(buffer);
+		scheduler.writeState(buffer);
+		out.writeSprites(sprites);
+	}
+	
+	/**
+	 * Restore the state saved in a snapshot of this world or of a world playing the same levels.
+	 * @param snapshot a full or delta snapshot.
+	 */
+	public void restore(Snapshot snapshot) {
+		ByteBuffer in = snapshot.read();
+		if (snapshot.getLevel() != level) {
+			level = snapshot.getLevel();
+			loadLevel();
+		}
+		if (snapshot.getNumSprites() != sprites.size()) {
+			throw new IllegalArgumentException("The snapshot has a different number of sprites");
+		}
+		readState(in);
+		scheduler.readState(in);
+		snapshot.readSprites(in, sprites);
+	}
+	
+	// the state of the world itself, STATE_SIZE bytes
+	private void writeState(ByteBuffer out) {
+		out.putInt(numLives);
+		out.putInt(score);
+		out.put((byte)outcome.ordinal());
+		random.writeState(out);
+		int holes = 0;
+		for (int i = 0; i < holesStatus.length; i++) {
+			holes |= holesStatus[i] ? 1 << i : 0;
+		}
+		out.put((byte)holes);
+	}
+	
+	private void readState(ByteBuffer in) {
+		numLives = in.getInt();
+		score = in.getInt();
+		outcome = OUTCOMES[in.get()];
+		random.readState(in);
+		int holes = in.get();
+		for (int i = 0; i < holesStatus.length; i++) {
+			holesStatus[i] = (holes & 1 << i) != 0;
+		}
+	}
+	
 	/** 
      * Player arrive a hole.
      * @param holeID the selected hole's index
      */
-	public static void arriveHole(int holeID) {
+	public void arriveHole(int holeID) {
 		holesStatus[holeID] = true;
+		score++;
 	}
 	
 	/**
 	 * Update all sprites and detect whether it upgrades.
-	 * @param input A wrapped for all keyboard, mouse and controller input.
+	 * @param input the source of keyboard input.
 	 * @param delta Time passed since last frame (milliseconds).
 	 */
-	public void update(Input input, int delta) {
-		// update all sprites
-		for (Sprite sprite : sprites) {
-			sprite.update(input, delta);
-		}	
+	public void update(InputSource input, int delta) {
+		if (outcome != Outcome.RUNNING) {
+			return;
+		}
+		
+		profiler.beginTick();
+		long start = System.nanoTime();
+		
+		// changes posted since the last tick
+		if (!commands.isEmpty()) {
+			applyCommands();
+		}
+		
+		// run timed events due in this frame
+		scheduler.advance(delta);
 		
-		// loop over all pairs of sprites and test for intersection
-		for (Sprite sprite1: sprites) {
-			for (Sprite sprite2: sprites) {
-				if (sprite1 != sprite2
-						&& sprite1.collides(sprite2)) {
-					sprite1.onCollision(sprite2);
+		// remember where sprites were, rendering interpolates from there
+		// indexed loops, an iterator per loop would be garbage every tick
+		for (int i = 0; i < sprites.size(); i++) {
+			sprites.get(i).savePosition();
+		}
+		
+		// update all sprites
+		boolean lanesUpdated = false;
+		for (int i = 0; i < sprites.size(); i++) {
+			Sprite sprite = sprites.get(i);
+			if (sprite.isInLane()) {
+				// the lanes are moved together, when the first of their objects would be updated
+				if (!lanesUpdated) {
+					// the player and the collisions only run after every lane has moved
+					if (laneStore.size() >= parallelLaneThreshold) {
+						laneStore.advanceParallel(delta, lanePool);
+					} else {
+						laneStore.advance(delta);
+					}
+					lanesUpdated = true;
 				}
+			} else {
+				sprite.update(input, delta);
 			}
+		}	
+		
+		long updated = System.nanoTime();
+		profiler.record(Profiler.Phase.UPDATE, updated - start);
+		
+		// only test pairs of sprites found by the broad phase, in the order of the sprite list
+		collisionTests = 0;
+		collisionPairs = 0;
+		tickDelta = delta;
+		if (broadPhase == BroadPhase.GRID) {
+			grid.rebin();
+			rowIndex.refresh();
+		} else if (broadPhase == BroadPhase.SWEEP_AND_PRUNE) {
+			sweepAndPrune.refresh();
+		}
+		for (int i = 0; i < sprites.size() && outcome == Outcome.RUNNING; i++) {
+			detectCollisions(i);
 		}
 		
+		long collided = System.nanoTime();
+		profiler.record(Profiler.Phase.COLLISION, collided - updated);
+		
 		// detect whether meet upgrade requirements
-		upgrade();
+		if (outcome == Outcome.RUNNING) {
+			upgrade();
+		}
+		profiler.record(Profiler.Phase.UPGRADE, System.nanoTime() - collided);
+		profiler.endTick(collisionTests, collisionPairs);
+	}
+	
+	/**
+	 * Sets the listener told about every collision, in the order they are handled.
+	 * @param collisionListener the listener, null for none.
+	 */
+	public void setCollisionListener(CollisionListener collisionListener) {
+		this.collisionListener = collisionListener;
+	}
+	
+	/** 
+     * Access the profiler measuring the phases of the world
+     * @return the profiler.
+     */
+	public Profiler getProfiler() {
+		return profiler;
+	}
+	
+	/** 
+     * Access the counts of the frames rendered by the world
+     * @return the render statistics.
+     */
+	public RenderStats getRenderStats() {
+		return renderStats;
+	}
+	
+	private void detectCollisions(int i) {
+		Sprite sprite1 = sprites.get(i);
+		int count = findCandidates(sprite1, -1);
+		for (int k = 0; k < count; k++) {
+			int j = candidates[k];
+			Sprite sprite2 = sprites.get(j);
+			if (i == j) {
+				continue;
+			}
+			collisionTests++;
+			if (collides(sprite1, sprite2)) {
+				collisionPairs++;
+				if (collisionListener != null) {
+					collisionListener.collided(sprite1, sprite2);
+				}
+				sprite1.onCollision(sprite2);
+				// the game ends at once when the last life is lost
+				if (outcome != Outcome.RUNNING) {
+					return;
+				}
+				// a collision may move sprites, e.g. the player loses a life and goes back
+				spriteMoved(j);
+				if (spriteMoved(i)) {
+					count = findCandidates(sprite1, j);
+					k = -1;
+				}
+			}
+		}
+	}
+	
+	private boolean collides(Sprite sprite1, Sprite sprite2) {
+		if (sprite1.collides(sprite2)) {
+			return true;
+		}
+		return sweptCollisions && (sweeps(sprite1, sprite2) || sweeps(sprite2, sprite1));
+	}
+	
+	// whether a moving object touched the other sprite anywhere along its movement in the tick
+	private boolean sweeps(Sprite sprite, Sprite other) {
+		if (!(sprite instanceof MovingObject)) {
+			return false;
+		}
+		MovingObject object = (MovingObject)sprite;
+		float distance = object.getSpeed() * tickDelta;
+		float dx = object.getX() - object.getPreviousX();
+		// an object which wrapped around is swept until it left the screen
+		if (Math.abs(dx) > distance + WRAP_TOLERANCE) {
+			dx = object.getMoveRight() ? distance : -distance;
+		}
+		if (dx == 0) {
+			return false;
+		}
+		// the same rounding as the bound of the sprite
+		sweptBound.set(object.getBounds());
+		sweptBound.setX((int)object.getPreviousX());
+		return sweptBound.sweepX(dx, other.getBounds()) >= 0;
+	}
+	
+	private int findCandidates(Sprite sprite1, int after) {
+		BoundingBox box = sprite1.getBroadBounds();
+		if (sweptCollisions) {
+			// objects which passed over the sprite in this tick are at most a tick of movement away
+			queryBound.set(box);
+			queryBound.expandX(maxSpeed * tickDelta);
+			box = queryBound;
+		}
+		if (broadPhase == BroadPhase.SWEEP_AND_PRUNE) {
+			return sweepAndPrune.query(box, after, candidates);
+		} else if (broadPhase == BroadPhase.BRUTE_FORCE) {
+			int count = 0;
+			for (int j = after + 1; j < sprites.size(); j++) {
+				candidates[count++] = j;
+			}
+			return count;
+		}
+		// the player only looks at the rows its bounds can reach
+		if (sprite1 instanceof Player) {
+			if (sweptCollisions) {
+				return rowIndex.query(box, after, candidates);
+			}
+			// its five bounds are tested against every row at once
+			return rowIndex.query(((Player)sprite1).getCollisionBounds(), box, after, candidates);
+		}
+		return grid.query(box, after, candidates);
+	}
+	
+	// tells the broad phase a sprite may have moved, returns whether its candidates may have changed
+	private boolean spriteMoved(int index) {
+		if (broadPhase == BroadPhase.GRID) {
+			return grid.rebin(index);
+		} else if (broadPhase == BroadPhase.SWEEP_AND_PRUNE) {
+			return sweepAndPrune.update(index);
+		}
+		// every sprite is a candidate already
+		return false;
 	}
 	
 	/**
-	 * Render all sprites.
+	 * Render all sprites, sprites which are hidden or off the screen are skipped.
 	 * @param g The Slick graphics object, used for drawing.
+	 * @param alpha how far the frame is between the previous and the current update, from 0 to 1.
 	 */
-	public void render(Graphics g) {
+	public void render(Graphics g, float alpha) {
+		long start = System.nanoTime();
+		renderStats.beginFrame();
+		
+		if (background == null && !backgroundFailed) {
+			bakeBackground();
+		}
+		if (background != null) {
+			background.draw(0, 0);
+			renderStats.countDraw();
+		} else {
+			renderLayer(staticLayer, alpha);
+		}
+		renderLayer(dynamicLayer, alpha);
+		
+		long elapsed = System.nanoTime() - start;
+		renderStats.endFrame(elapsed);
+		profiler.record(Profiler.Phase.RENDER, elapsed);
+	}
+	
+	private void renderLayer(ArrayList<Sprite> layer, float alpha) {
+		int drawn = 0;
+		int culled = 0;
+		int hidden = 0;
+		for (int i = 0; i < layer.size(); i++) {
+			Sprite sprite = layer.get(i);
+			// hidden turtles and extra lives are skipped without calling them
+			if (sprite.isHidden()) {
+				hidden++;
+			} else if (!sprite.isDrawnOnScreen(alpha)) {
+				culled++;
+			} else {
+				sprite.render(alpha, renderStats);
+				drawn++;
+			}
+		}
+		renderStats.countSprites(drawn, culled, hidden);
+	}
+	
+	private void splitLayers() {
+		// tiles never change, but only the ones drawn before other sprites can go to the background
+		ArrayList<Sprite> previousLayer = staticLayer;
+		staticLayer = new ArrayList<>();
+		dynamicLayer = new ArrayList<>();
 		for (Sprite sprite : sprites) {
-			sprite.render();
+			if (sprite instanceof Tile && dynamicLayer.isEmpty()) {
+				staticLayer.add(sprite);
+			} else {
+				dynamicLayer.add(sprite);
+			}
+		}
+		sortByTexture(dynamicLayer);
+		
+		// the background of the previous level is kept when it looks the same, levels often share it
+		if (previousLayer != null && sameLayer(previousLayer, staticLayer)) {
+			return;
+		}
+		dropBackground();
+	}
+	
+	private void dropBackground() {
+		if (background != null) {
+			try {
+				background.destroy();
+			} catch (SlickException e) {
+				e.printStackTrace();
+			}
 		}
+		background = null;
+		backgroundFailed = false;
 	}
 	
-	private void readLevelFile(int level) {
-		try (BufferedReader br = new BufferedReader(new FileReader(LEVEL_PATH[level - 1]))) {
+	private static void sortByTexture(ArrayList<Sprite> layer) {
+		// only runs of sprites which stay in their row are sorted, such as vehicles, logs and turtles
+		int start = 0;
+		for (int i = 0; i <= layer.size(); i++) {
+			if (i == layer.size() || !(layer.get(i) instanceof MovingObject) || layer.get(i) instanceof ExtraLife) {
+				sortRows(layer.subList(start, i));
+				start = i + 1;
+			}
+		}
+	}
+	
+	private static void sortRows(List<Sprite> run) {
+		/* whole rows are moved next to rows with the same texture, the order within a row is kept,
+		   so sprites which overlap are still drawn in the order of the sprite list */
+		int size = run.size();
+		// the y of every row and the texture of its first sprite, a run only has a few rows
+		float[] rows = new float[size];
+		int[] rowTextures = new int[size];
+		int[] keys = new int[size];
+		int numRows = 0;
+		int numTextures = 0;
+		float maxHeight = 0;
+		for (int i = 0; i < size; i++) {
+			Sprite sprite = run.get(i);
+			int row = 0;
+			while (row < numRows && rows[row] != sprite.getY()) {
+				row++;
+			}
+			if (row == numRows) {
+				rows[numRows] = sprite.getY();
+				rowTextures[numRows++] = sprite.getTextureId();
+			}
+			keys[i] = rowTextures[row];
+			numTextures = Math.max(numTextures, keys[i] + 1);
+			maxHeight = Math.max(maxHeight, sprite.getImageHeight());
+		}
+		// rows closer than the highest image may overlap, then the order is kept
+		Arrays.sort(rows, 0, numRows);
+		for (int i = 1; i < numRows; i++) {
+			if (rows[i] - rows[i - 1] < maxHeight) {
+				return;
+			}
+		}
+		// a stable counting sort by the texture of the row
+		int[] starts = new int[numTextures + 1];
+		for (int i = 0; i < size; i++) {
+			starts[keys[i] + 1]++;
+		}
+		for (int t = 0; t < numTextures; t++) {
+			starts[t + 1] += starts[t];
+		}
+		Sprite[] sorted = new Sprite[size];
+		for (int i = 0; i < size; i++) {
+			sorted[starts[keys[i]]++] = run.get(i);
+		}
+		for (int i = 0; i < size; i++) {
+			run.set(i, sorted[i]);
+		}
+	}
+	
+	private static boolean sameLayer(ArrayList<Sprite> layer1, ArrayList<Sprite> layer2) {
+		if (layer1.size() != layer2.size()) {
+			return false;
+		}
+		for (int i = 0; i < layer1.size(); i++) {
+			if (!layer1.get(i).drawsLike(layer2.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void bakeBackground() {
+		// render the static layer once into an offscreen image
+		try {
+			background = new Image(App.SCREEN_WIDTH, App.SCREEN_HEIGHT);
+			Graphics g = background.getGraphics();
+			for (Sprite sprite : staticLayer) {
+				sprite.renderTo(g);
+			}
+			g.flush();
+		} catch (SlickException e) {
+			// without offscreen rendering, tiles are drawn one by one
+			e.printStackTrace();
+			background = null;
+			backgroundFailed = true;
+		}
+	}
+	
+	/**
+	 * Create all sprites described by a level file.
+	 * A compiled level next to the file is read instead when it is not older than the file.
+	 * @param levelPath the path of the level file.
+	 * @return the sprites in the order of the file.
+	 */
+	static ArrayList<Sprite> readLevelFile(String levelPath) {
+		return readLevelFile(levelPath, null);
+	}
+	
+	/**
+	 * Create all sprites described by a level file, taking them from pools.
+	 * @param levelPath the path of the level file.
+	 * @param pools the pools of the sprites, null to create new sprites.
+	 * @return the sprites in the order of the file.
+	 */
+	static ArrayList<Sprite> readLevelFile(String levelPath, SpritePools pools) {
+		// prefer the compiled level when it is up to date
+		String compiledPath = CompiledLevel.getCompiledPath(levelPath);
+		if (CompiledLevel.isUpToDate(levelPath, compiledPath)) {
+			try {
+				return CompiledLevel.read(compiledPath, pools);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		ArrayList<Sprite> levelSprites = new ArrayList<>();
+		try (BufferedReader br = new BufferedReader(new FileReader(levelPath))) {
 			String text;
 			while((text = br.readLine()) != null) {
 				String[] spriteInfo = text.split(DELIMITER);
-				sprites.add(addSprite(spriteInfo));
+				levelSprites.add(addSprite(spriteInfo, pools));
 			}
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
@@ -162,6 +1045,7 @@ public class World {
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
+		return levelSprites;
 	}
 	
 	private void upgrade() {
@@ -176,44 +1060,64 @@ public class World {
 			return;
 		} else {
 			level++;
-			if (level > LEVEL_PATH.length) {
-				System.exit(0);
+			if (!levelSource.hasLevel(level)) {
+				outcome = Outcome.WON;
 			} else {
-				new World();
+				loadLevel();
 			}
 		}
 	}
 	
-	private Sprite addSprite(String[] spriteInfo) {
+	private static Sprite addSprite(String[] spriteInfo, SpritePools pools) {
+		// tiles have no direction of movement
+		boolean moveRight = spriteInfo.length > 3 && Boolean.parseBoolean(spriteInfo[3]);
+		return createSprite(spriteInfo[0], Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]), moveRight, pools);
+	}
+	
+	/**
+	 * Create the sprite of a level file entry, or take it from its pool.
+	 * @param type the type of the entry, such as water or bus.
+	 * @param x x position.
+	 * @param y y position.
+	 * @param moveRight represents the direction of movement, ignored by tiles.
+	 * @param pools the pools of the sprites, null to create a new sprite.
+	 * @return the sprite, or null when the type is unknown.
+	 */
+	static Sprite createSprite(String type, float x, float y, boolean moveRight, SpritePools pools) {
+		return pools == null ? createSprite(type, x, y, moveRight) : pools.acquire(type, x, y, moveRight);
+	}
+	
+	/**
+	 * Create the sprite of a level file entry.
+	 * @param type the type of the entry, such as water or bus.
+	 * @param x x position.
+	 * @param y y position.
+	 * @param moveRight represents the direction of movement, ignored by tiles.
+	 * @return the new sprite, or null when the type is unknown.
+	 */
+	static Sprite createSprite(String type, float x, float y, boolean moveRight) {
 		// create corresponding sprites
-		switch(spriteInfo[0]) {
+		switch(type) {
 		case WATER: 
-			return (Sprite)Tile.createWaterTile(Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]));
+			return (Sprite)Tile.createWaterTile(x, y);
 		case GRASS:
-			return (Sprite)Tile.createGrassTile(Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]));
+			return (Sprite)Tile.createGrassTile(x, y);
 		case TREE:
-			return (Sprite)Tile.createTreeTile(Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]));
+			return (Sprite)Tile.createTreeTile(x, y);
 		case BUS:
-			return (Sprite)new Bus(Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]), 
-					Boolean.parseBoolean(spriteInfo[3]));
+			return (Sprite)new Bus(x, y, moveRight);
 		case RACECAR:
-			return (Sprite)new Racecar(Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]),
-					Boolean.parseBoolean(spriteInfo[3]));
+			return (Sprite)new Racecar(x, y, moveRight);
 		case BIKE:
-			return (Sprite)new Bike(Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]),
-					Boolean.parseBoolean(spriteInfo[3]));
+			return (Sprite)new Bike(x, y, moveRight);
 		case BULLDOZER:
-			return (Sprite)new Bulldozer(Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]),
-					Boolean.parseBoolean(spriteInfo[3]));
+			return (Sprite)new Bulldozer(x, y, moveRight);
 		case LOG:
-			return (Sprite)Log.createLog(Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]),
-					Boolean.parseBoolean(spriteInfo[3]));
+			return (Sprite)Log.createLog(x, y, moveRight);
 		case LONGLOG:
-			return (Sprite)Log.createLongLog(Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]),
-					Boolean.parseBoolean(spriteInfo[3]));
+			return (Sprite)Log.createLongLog(x, y, moveRight);
 		case TURTLE:
-			return (Sprite)new Turtle(Float.parseFloat(spriteInfo[1]), Float.parseFloat(spriteInfo[2]),
-					Boolean.parseBoolean(spriteInfo[3]));
+			return (Sprite)new Turtle(x, y, moveRight);
 		default:
 			return null;
 		}
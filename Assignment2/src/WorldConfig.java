@@ -0,0 +1,133 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The settings of the simulation of a world, given to the world when it is created.
+ * A world reads its configuration once, so changing a configuration later only
+ * changes the worlds created with it afterwards, and worlds running at the same time
+ * may use different settings.
+ */
+public class WorldConfig {
+	// lanes are moved in parallel when the lane store holds at least this many objects
+	private static final int DEFAULT_PARALLEL_LANE_THRESHOLD = 8192;
+
+	private boolean useLaneStore = false;
+	private int parallelLaneThreshold = DEFAULT_PARALLEL_LANE_THRESHOLD;
+	private ForkJoinPool lanePool = ForkJoinPool.commonPool();
+	private BroadPhase broadPhase = BroadPhase.GRID;
+	private boolean sweptCollisions = false;
+	private boolean prefetchLevels = true;
+
+	/**
+	 * Initialize an object of class WorldConfig with the default settings.
+	 */
+	public WorldConfig() {
+	}
+
+	/**
+	 * Initialize an object of class WorldConfig with the settings of another configuration.
+	 * @param config the configuration copied.
+	 */
+	public WorldConfig(WorldConfig config) {
+		useLaneStore = config.useLaneStore;
+		parallelLaneThreshold = config.parallelLaneThreshold;
+		lanePool = config.lanePool;
+		broadPhase = config.broadPhase;
+		sweptCollisions = config.sweptCollisions;
+		prefetchLevels = config.prefetchLevels;
+	}
+
+	/**
+	 * Sets whether the world moves its moving objects with a LaneStore.
+	 * @param useLaneStore true to keep moving objects in primitive arrays, false by default.
+	 */
+	public void setUseLaneStore(boolean useLaneStore) {
+		this.useLaneStore = useLaneStore;
+	}
+
+	/**
+	 * detect whether the world moves its moving objects with a LaneStore.
+	 * @return true to keep moving objects in primitive arrays.
+	 */
+	public boolean getUseLaneStore() {
+		return useLaneStore;
+	}
+
+	/**
+	 * Sets from how many objects in its lane store the world moves its lanes in parallel.
+	 * Worlds without a lane store always move their objects one by one.
+	 * @param threshold the number of objects, Integer.MAX_VALUE to never move lanes in parallel.
+	 * @param pool the pool moving the lanes, the common pool by default.
+	 */
+	public void setParallelLanes(int threshold, ForkJoinPool pool) {
+		parallelLaneThreshold = threshold;
+		lanePool = pool;
+	}
+
+	/**
+	 * Accesses from how many objects in its lane store the world moves its lanes in parallel.
+	 * @return the number of objects.
+	 */
+	public int getParallelLaneThreshold() {
+		return parallelLaneThreshold;
+	}
+
+	/**
+	 * Accesses the pool moving the lanes in parallel.
+	 * @return the pool.
+	 */
+	public ForkJoinPool getLanePool() {
+		return lanePool;
+	}
+
+	/**
+	 * Sets how the world finds the pairs of sprites which may collide.
+	 * Every broad phase gives the same collisions in the same order.
+	 * @param broadPhase the broad phase, BroadPhase.GRID by default.
+	 */
+	public void setBroadPhase(BroadPhase broadPhase) {
+		this.broadPhase = broadPhase;
+	}
+
+	/**
+	 * Accesses how the world finds the pairs of sprites which may collide.
+	 * @return the broad phase.
+	 */
+	public BroadPhase getBroadPhase() {
+		return broadPhase;
+	}
+
+	/**
+	 * Sets whether the world sweeps moving objects along their movement in every tick,
+	 * so they collide with the sprites they pass over even when a long tick moves them further than a sprite.
+	 * @param sweptCollisions true to sweep moving objects, false by default.
+	 */
+	public void setSweptCollisions(boolean sweptCollisions) {
+		this.sweptCollisions = sweptCollisions;
+	}
+
+	/**
+	 * detect whether the world sweeps moving objects along their movement in every tick.
+	 * @return true to sweep moving objects.
+	 */
+	public boolean getSweptCollisions() {
+		return sweptCollisions;
+	}
+
+	/**
+	 * Sets whether the world creates the next level on a thread of its own while the current one is played.
+	 * Worlds simulated as fast as possible, such as the episodes of a BatchRunner, reach the next level
+	 * before it is ready and create it again, so the prefetch only costs them time.
+	 * @param prefetchLevels true to create the next level in the background, true by default.
+	 */
+	public void setPrefetchLevels(boolean prefetchLevels) {
+		this.prefetchLevels = prefetchLevels;
+	}
+
+	/**
+	 * detect whether the world creates the next level in the background.
+	 * @return true to create the next level in the background.
+	 */
+	public boolean getPrefetchLevels() {
+		return prefetchLevels;
+	}
+}
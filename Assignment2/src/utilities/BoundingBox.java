@@ -14,6 +14,9 @@ public class BoundingBox {
 	private float top;
 	private float width;
 	private float height;
+	// left + width and top + height, kept up to date by every change
+	private float right;
+	private float bottom;
 	
 	public BoundingBox(float x, float y, float width, float height) {
 		setWidth(width);
@@ -28,10 +31,7 @@ public class BoundingBox {
 		setY(y);
 	}
 	public BoundingBox(BoundingBox bb) {
-		width = bb.width;
-		height = bb.height;
-		left = bb.left;
-		top = bb.top;
+		set(bb);
 	}
 
 	/*
@@ -39,16 +39,20 @@ public class BoundingBox {
 	 */
 	public void setX(float x) {
 		left = x - width / 2;
+		right = left + width;
 	}
 	public void setY(float y) {
 		top = y - height / 2;
+		bottom = top + height;
 	}
 	
 	public void setWidth(float w) {
 		width = w * FUZZ;
+		right = left + width;
 	}
 	public void setHeight(float h) {
 		height = h * FUZZ;
+		bottom = top + height;
 	}
 	
 	public float getX() {//Will
@@ -64,10 +68,10 @@ public class BoundingBox {
 		return top;
 	}
 	public float getRight() {
-		return left + width;
+		return right;
 	}
 	public float getBottom() {
-		return top + height;
+		return bottom;
 	}
 	
 	public float getWidth() {
@@ -77,10 +81,119 @@ public class BoundingBox {
 		return height;
 	}
 	
+	/*
+	 * Copies the position and size of another bounding box.
+	 */
+	public void set(BoundingBox bb) {
+		width = bb.width;
+		height = bb.height;
+		left = bb.left;
+		top = bb.top;
+		right = bb.right;
+		bottom = bb.bottom;
+	}
+	/*
+	 * Grows the bounding box until it also covers another bounding box.
+	 */
+	public void union(BoundingBox bb) {
+		float maxRight = Math.max(right, bb.right);
+		float maxBottom = Math.max(bottom, bb.bottom);
+		left = Math.min(left, bb.left);
+		top = Math.min(top, bb.top);
+		width = maxRight - left;
+		height = maxBottom - top;
+		right = left + width;
+		bottom = top + height;
+	}
+	
+	/*
+	 * Grows the bounding box by an amount on both the left and the right.
+	 */
+	public void expandX(float amount) {
+		left -= amount;
+		width += 2 * amount;
+		right = left + width;
+	}
+	
 	public boolean intersects(BoundingBox other) {
-		return !(other.left > getRight()
-			  || other.getRight()  < left
-			  || other.top > getBottom()
-			  || other.getBottom() < top);
+		return !(other.left > right
+			  || other.right  < left
+			  || other.top > bottom
+			  || other.bottom < top);
+	}
+	
+	/*
+	 * Tests the bounding box against many boxes at once, given by the arrays of their
+	 * left, top, right and bottom, with the same test as intersects. The boxes from
+	 * index from to from + count - 1 are tested, bit k of hits is set when box from + k
+	 * intersects and cleared otherwise. hits needs (count + 63) / 64 words and apart is
+	 * scratch space as long as the other arrays.
+	 * The first loop only does arithmetic on the arrays in order, without branches, so the
+	 * JIT compiler turns it into vector instructions testing 8 or 16 boxes at once.
+	 * Returns the number of intersecting boxes.
+	 */
+	public int intersects(float[] lefts, float[] tops, float[] rights, float[] bottoms,
+			int from, int count, float[] apart, long[] hits) {
+		int end = from + count;
+		for (int i = from; i < end; i++) {
+			// |d| - d is 0 when d is not negative and exactly 2|d| otherwise, so the sum is 0 when they intersect
+			float dl = right - lefts[i];
+			float dr = rights[i] - left;
+			float dt = bottom - tops[i];
+			float db = bottoms[i] - top;
+			apart[i] = (Math.abs(dl) - dl) + (Math.abs(dr) - dr) + (Math.abs(dt) - dt) + (Math.abs(db) - db);
+		}
+		int total = 0;
+		for (int word = 0; word * 64 < count; word++) {
+			int start = from + word * 64;
+			int stop = Math.min(end, start + 64);
+			long bits = 0;
+			int i = start;
+			// the product of 8 boxes apart is positive, it is only 0 or NaN when one may intersect
+			for (; i + 8 <= stop; i += 8) {
+				float product = apart[i] * apart[i + 1] * apart[i + 2] * apart[i + 3]
+						* apart[i + 4] * apart[i + 5] * apart[i + 6] * apart[i + 7];
+				if (!(product > 0)) {
+					for (int k = i; k < i + 8; k++) {
+						if (apart[k] == 0) {
+							bits |= 1L << (k - start);
+						}
+					}
+				}
+			}
+			for (; i < stop; i++) {
+				if (apart[i] == 0) {
+					bits |= 1L << (i - start);
+				}
+			}
+			hits[word] = bits;
+			total += Long.bitCount(bits);
+		}
+		return total;
+	}
+	
+	/*
+	 * Swept test for a bounding box moving by dx along x while the other one stays still.
+	 * Returns the time of impact, from 0 at the start of the movement to 1 at its end,
+	 * or -1 when they never touch. It is 0 when they already touch at the start.
+	 */
+	public float sweepX(float dx, BoundingBox other) {
+		// moving along x never changes whether they overlap along y
+		if (other.top > bottom || other.bottom < top) {
+			return -1;
+		}
+		if (!(other.left > right || other.right < left)) {
+			return 0;
+		}
+		float time;
+		if (dx > 0) {
+			time = (other.left - right) / dx;
+		} else if (dx < 0) {
+			time = (other.right - left) / dx;
+		} else {
+			return -1;
+		}
+		// a negative time means the other box is behind
+		return time >= 0 && time <= 1 ? time : -1;
 	}
 }